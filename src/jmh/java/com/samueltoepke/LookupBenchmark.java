@@ -0,0 +1,104 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* LookupBenchmark class. Measures a full getBotometerResponseForScreenName
+* lookup with no network: the user, timeline and mentions come from a
+* ReplayTwitterSource, and the payload is POSTed to a BotometerReplayServer
+* on the loopback interface. What's left is the library's own overhead:
+* paging, parsing, payload construction, the HTTP round trip and the
+* connection pool.
+*
+* Run with: ./gradlew jmh (the gc profiler reports allocation rate).
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean parallel_fetch;
+
+    private Path                  directory;
+    private BotometerReplayServer server;
+    private Botometer4J           botometer;
+
+    @Setup
+    public void setup() throws Exception {
+        this.directory = Files.createTempDirectory("botometer4j-bench");
+
+        ReplayArchive archive = new ReplayArchive(this.directory.toFile());
+        TwitterFixtures.record(archive, Botometer4J.MAX_TWEETS, Botometer4J.MAX_MENTIONS);
+
+        this.server = new BotometerReplayServer(archive, 0, 0, 0.0);
+
+        Botometer4JOptions options = new Botometer4JOptions()
+            .setTwitterSource(new ReplayTwitterSource(archive))
+            .setBotometerUrl(this.server.getUrl())
+            .setRateLimitScheduler(null)
+            .setParallelFetch(this.parallel_fetch);
+
+        TwitterCredentials credentials = new TwitterCredentials("bench", "bench", "bench", "bench");
+        this.botometer = new Botometer4J("bench", Collections.singletonList(credentials), options);
+
+        if (lookup().isEmpty())
+            throw new IllegalStateException("setup: lookup against the replay server failed.");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.botometer.close();
+        this.server.close();
+
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public String lookup() {
+        return this.botometer.getBotometerResponseForScreenName(TwitterFixtures.SCREEN_NAME, CacheMode.BYPASS);
+    }
+}
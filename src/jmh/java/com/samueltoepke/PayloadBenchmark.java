@@ -0,0 +1,197 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.stream.JsonWriter;
+
+import twitter4j.Status;
+import twitter4j.User;
+
+/**
+* PayloadBenchmark class. Measures the CPU and allocation cost of turning
+* one account's user, timeline and mentions into the Botometer payload:
+* a single status, a single user, date formatting, the whole payload as
+* a String, and the whole payload streamed as UTF-8 bytes the way it goes
+* out on the wire, plain, compact, quick and gzipped.
+*
+* Run with: ./gradlew jmh (the gc profiler reports allocation rate).
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+    // Botometer4J.MAX_TWEETS + Botometer4J.MAX_MENTIONS, a full account.
+    @Param({ "200" })
+    public int timeline_size;
+
+    @Param({ "100" })
+    public int mentions_size;
+
+    private AccountData account_data;
+    private Status      retweet;
+    private User        user;
+    private Date        created_at;
+
+    @Setup
+    public void setup() throws Exception {
+        this.account_data = TwitterFixtures.account(this.timeline_size, this.mentions_size);
+        this.user         = this.account_data.getUser();
+        this.created_at   = this.user.getCreatedAt();
+
+        for (Status status : this.account_data.getTimeline()) {
+            if (status.isRetweet()) {
+                this.retweet = status;
+                break;
+            }
+        }
+
+        if (this.retweet == null)
+            throw new IllegalStateException("setup: fixture timeline has no retweet.");
+    }
+
+    @Benchmark
+    public long writeStatus() throws IOException {
+        DiscardWriter out = new DiscardWriter();
+        new PayloadWriter(new JsonWriter(out)).writeStatus(this.retweet);
+        return out.count;
+    }
+
+    @Benchmark
+    public long writeUser() throws IOException {
+        DiscardWriter out = new DiscardWriter();
+        new PayloadWriter(new JsonWriter(out)).writeUser(this.user);
+        return out.count;
+    }
+
+    @Benchmark
+    public String formattedDate() {
+        return PayloadWriter.getFormattedDate(this.created_at);
+    }
+
+   /**
+    * The whole payload built into a String, as it is for debug logging.
+    */
+    @Benchmark
+    public String payloadToString() throws IOException {
+        StringWriter out = new StringWriter();
+        new PayloadEntity(this.account_data).writeTo(out);
+        return out.toString();
+    }
+
+   /**
+    * The whole payload encoded to UTF-8 and streamed, as it is for the
+    * POST to Botometer.
+    */
+    @Benchmark
+    public long payloadToStream() throws IOException {
+        DiscardOutputStream out = new DiscardOutputStream();
+        new PayloadEntity(this.account_data).writeTo(out);
+        return out.count;
+    }
+
+   /**
+    * As payloadToStream, without the constant status fields.
+    */
+    @Benchmark
+    public long compactPayloadToStream() throws IOException {
+        DiscardOutputStream out = new DiscardOutputStream();
+        new PayloadEntity(this.account_data, PayloadProfile.FULL.without(PayloadProfile.Field.CONSTANT_FIELDS), BotometerMetrics.NONE, false).writeTo(out);
+        return out.count;
+    }
+
+   /**
+    * As payloadToStream, with the QUICK triage profile.
+    */
+    @Benchmark
+    public long quickPayloadToStream() throws IOException {
+        DiscardOutputStream out = new DiscardOutputStream();
+        new PayloadEntity(this.account_data, PayloadProfile.QUICK, BotometerMetrics.NONE, false).writeTo(out);
+        return out.count;
+    }
+
+   /**
+    * As payloadToStream, gzipped on the way out. The returned count is
+    * the compressed size.
+    */
+    @Benchmark
+    public long gzipPayloadToStream() throws IOException {
+        DiscardOutputStream out = new DiscardOutputStream();
+        new PayloadEntity(this.account_data, PayloadProfile.FULL, BotometerMetrics.NONE, true).writeTo(out);
+        return out.count;
+    }
+
+    static final class DiscardWriter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            this.count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            this.count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static final class DiscardOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.count += len;
+        }
+    }
+}
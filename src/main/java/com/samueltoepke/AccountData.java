@@ -0,0 +1,70 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.List;
+
+import twitter4j.Status;
+import twitter4j.User;
+
+/**
+* AccountData class. Everything pulled from the Twitter REST API for a
+* single screen name, handed from the fetch stage to the payload stage,
+* along with the PayloadProfile it was fetched for.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class AccountData {
+
+    private final String         screen_name;
+    private final User           user;
+    private final List<Status>   timeline;
+    private final List<Status>   mentions;
+    private final PayloadProfile profile;
+
+    AccountData(String screen_name, User user, List<Status> timeline, List<Status> mentions) {
+        this(screen_name, user, timeline, mentions, PayloadProfile.FULL);
+    }
+
+    AccountData(String screen_name, User user, List<Status> timeline, List<Status> mentions, PayloadProfile profile) {
+        this.screen_name = screen_name;
+        this.user        = user;
+        this.timeline    = timeline;
+        this.mentions    = mentions;
+        this.profile     = profile;
+    }
+
+    String getScreenName() {
+        return this.screen_name;
+    }
+
+    User getUser() {
+        return this.user;
+    }
+
+    List<Status> getTimeline() {
+        return this.timeline;
+    }
+
+    List<Status> getMentions() {
+        return this.mentions;
+    }
+
+    PayloadProfile getProfile() {
+        return this.profile;
+    }
+}
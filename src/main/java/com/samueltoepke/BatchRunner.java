@@ -0,0 +1,369 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+* BatchRunner class. Scores a list of screen names, one per line, through
+* a BotometerPipeline and appends one JSON object per account to an
+* NDJSON output file:
+*
+*   {"screen_name":"...","status":"ok","result":{...Botometer reply...}}
+*   {"screen_name":"...","status":"failed","reason":"PROTECTED","transient":false,"message":"..."}
+*
+* Finished accounts are appended to a checkpoint file each time the output
+* is flushed, output first, so a restarted job skips them and carries on
+* where it stopped. Accounts that failed for a transient reason, or because
+* the credentials were rejected, aren't checkpointed and are tried again on
+* the next run. An account can show up
+* twice in the output if the job died between the two flushes.
+*
+* Usage:
+*   java com.samueltoepke.BatchRunner [--config file] [--checkpoint file]
+*       [--concurrency n] [--flush-every n] input|- output
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class BatchRunner {
+
+    private final static Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+
+    public static final int DEFAULT_CONCURRENCY = BotometerPipeline.DEFAULT_POST_THREADS;
+    public static final int DEFAULT_FLUSH_EVERY = 100;
+
+    private final Botometer4J botometer;
+    private final int         concurrency;
+    private final int         flush_every;
+
+    // Guarded by this: the writers, the accounts written since the last flush,
+    // and the accounts still in the pipeline.
+    private Writer             output;
+    private Writer             checkpoint;
+    private final List<String> unflushed = new ArrayList<>();
+    private long               pending   = 0;
+    private long               succeeded = 0;
+    private long               failed    = 0;
+
+    /**
+    * Constructor for the BatchRunner object.
+    *
+    * @param botometer client to score with; left open.
+    * @param concurrency concurrent Botometer POSTs, and Twitter fetches per credential set.
+    * @param flush_every accounts written between flushes of the output and checkpoint.
+    * @return instantiated BatchRunner object.
+    */
+    public BatchRunner(Botometer4J botometer, int concurrency, int flush_every) {
+        if (botometer == null || concurrency < 1 || flush_every < 1)
+            throw new IllegalArgumentException("BatchRunner: constructor arguments incorrect, make sure all populated and positive.");
+
+        this.botometer   = botometer;
+        this.concurrency = concurrency;
+        this.flush_every = flush_every;
+    }
+
+   /**
+    * Scores every screen name in the input that isn't in the checkpoint
+    * yet. Blank lines, lines starting with '#' and repeated names are
+    * skipped; a leading '@' is dropped.
+    *
+    * @param input screen names, one per line; left open.
+    * @param output NDJSON file to append results to.
+    * @param checkpoint file of finished screen names to read and append to.
+    * @return number of accounts scored or permanently failed in this run.
+    */
+    public long run(Reader input, Path output, Path checkpoint) throws IOException, InterruptedException {
+        String method = "run: ";
+        logger.debug("{}STARTING.", method);
+
+        Set<String> done = readCheckpoint(checkpoint);
+        logger.info("{}{} accounts already done per {}", method, done.size(), checkpoint);
+
+        BotometerPipeline pipeline = null;
+
+        try {
+            this.output     = Files.newBufferedWriter(output, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            this.checkpoint = Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            // Twitter fetching scales with the number of credential sets, as in scoreAll.
+            pipeline = new BotometerPipeline(this.botometer, this.concurrency * this.botometer.getCredentialCount(),
+                BotometerPipeline.DEFAULT_BUILD_THREADS, this.concurrency, 2 * this.concurrency);
+
+            BufferedReader reader = (input instanceof BufferedReader) ? (BufferedReader) input : new BufferedReader(input);
+
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String screen_name = line.trim();
+                if (screen_name.startsWith("@"))
+                    screen_name = screen_name.substring(1);
+
+                if (screen_name.isEmpty() || screen_name.startsWith("#") || !done.add(key(screen_name)))
+                    continue;
+
+                synchronized (this) {
+                    this.pending++;
+                }
+
+                // Blocks while the pipeline is full, so the input is read no faster than it is scored.
+                final String name = screen_name;
+                CompletableFuture<String> future = pipeline.submit(name);
+                future.whenComplete((json, failure) -> write(name, json, failure));
+            }
+
+            pipeline.close();
+            pipeline = null;
+
+            synchronized (this) {
+                while (this.pending > 0)
+                    wait();
+
+                flush();
+            }
+        } finally {
+            if (pipeline != null)
+                pipeline.close();
+
+            synchronized (this) {
+                closeQuietly(this.output);
+                closeQuietly(this.checkpoint);
+            }
+        }
+
+        long togo;
+        synchronized (this) {
+            logger.info("{}{} scored, {} failed.", method, this.succeeded, this.failed);
+            togo = this.succeeded + this.failed;
+        }
+
+        logger.debug("{}ENDING.", method);
+        return togo;
+    }
+
+    private synchronized void write(String screen_name, String json, Throwable result_failure) {
+        try {
+            boolean   finished;
+            Throwable failure = result_failure;
+
+            // A 2xx that isn't Botometer's JSON (an empty body, a proxy's HTML
+            // page) would be an invalid output line; it fails like an outage.
+            if (failure == null && !isJsonObject(json))
+                failure = new BotometerException(BotometerException.Reason.BOTOMETER_UNAVAILABLE, screen_name, -1,
+                    "reply is not a JSON object.", null);
+
+            StringWriter line = new StringWriter();
+            JsonWriter writer = new JsonWriter(line);
+
+            writer.beginObject();
+            writer.name("screen_name").value(screen_name);
+
+            if (failure == null) {
+                writer.name("status").value("ok");
+                // Botometer's JSON is passed through untouched; line breaks can
+                // only be whitespace between tokens, so they are flattened.
+                writer.name("result").jsonValue(json.replace('\r', ' ').replace('\n', ' '));
+                finished = true;
+            } else {
+                Throwable cause = (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
+                BotometerException be = (cause instanceof BotometerException) ? (BotometerException) cause : null;
+
+                writer.name("status").value("failed");
+                writer.name("reason").value(be != null ? be.getReason().name() : cause.getClass().getSimpleName());
+                writer.name("transient").value(be == null || be.isTransient());
+                writer.name("message").value(cause.getMessage());
+
+                // Transient failures are left out of the checkpoint so a rerun tries them again,
+                // and so are rejected credentials, which say nothing about the account.
+                finished = be != null && !be.isTransient() && be.getReason() != BotometerException.Reason.AUTHENTICATION;
+            }
+
+            writer.endObject();
+            writer.close();
+
+            try {
+                this.output.write(line.toString());
+                this.output.write('\n');
+            } catch (IOException io) {
+                // The result never made it to the output, so it isn't checkpointed either.
+                logger.error("write: failed writing {}, {}", screen_name, io.toString());
+                this.failed++;
+                return;
+            }
+
+            if (failure == null)
+                this.succeeded++;
+            else
+                this.failed++;
+
+            if (finished)
+                this.unflushed.add(screen_name);
+
+            if (this.unflushed.size() >= this.flush_every)
+                flush();
+        } catch (IOException io) {
+            logger.error("write: failed flushing after {}, {}", screen_name, io.toString());
+        } finally {
+            this.pending--;
+            notifyAll();
+        }
+    }
+
+    private static boolean isJsonObject(String json) {
+        if (json == null)
+            return false;
+
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+                return false;
+
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+   /**
+    * Flushes the output, then checkpoints what it holds, so the checkpoint
+    * never claims an account whose result could still be lost.
+    */
+    private synchronized void flush() throws IOException {
+        this.output.flush();
+
+        for (String screen_name : this.unflushed) {
+            this.checkpoint.write(key(screen_name));
+            this.checkpoint.write('\n');
+        }
+        this.checkpoint.flush();
+
+        this.unflushed.clear();
+    }
+
+    private static Set<String> readCheckpoint(Path checkpoint) throws IOException {
+        Set<String> togo = new HashSet<>();
+
+        if (Files.exists(checkpoint)) {
+            try (BufferedReader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.trim().isEmpty())
+                        togo.add(line.trim());
+                }
+            }
+        }
+
+        return togo;
+    }
+
+    private static String key(String screen_name) {
+        return screen_name.toLowerCase(Locale.ROOT);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+
+        try {
+            closeable.close();
+        } catch (IOException io) {
+            logger.error("closeQuietly: {}", io.toString());
+        }
+    }
+
+   /**
+    * Main method. Credentials come from config.properties, as for HelloWorld.
+    * @param args options, then the input file (or - for stdin) and the output file.
+    */
+    public static void main(String[] args) throws Exception {
+        String method = "BatchRunner: ";
+
+        String config      = null;
+        String checkpoint  = null;
+        int    concurrency = DEFAULT_CONCURRENCY;
+        int    flush_every = DEFAULT_FLUSH_EVERY;
+        List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--config".equals(args[i]) && i + 1 < args.length)
+                config = args[++i];
+            else if ("--checkpoint".equals(args[i]) && i + 1 < args.length)
+                checkpoint = args[++i];
+            else if ("--concurrency".equals(args[i]) && i + 1 < args.length)
+                concurrency = Integer.parseInt(args[++i]);
+            else if ("--flush-every".equals(args[i]) && i + 1 < args.length)
+                flush_every = Integer.parseInt(args[++i]);
+            else
+                files.add(args[i]);
+        }
+
+        if (files.size() != 2) {
+            System.err.println("usage: BatchRunner [--config file] [--checkpoint file] [--concurrency n] [--flush-every n] input|- output");
+            System.exit(1);
+        }
+
+        Properties prop = new Properties();
+        try (InputStream in = (config != null) ? new FileInputStream(config)
+                : ClassLoader.getSystemClassLoader().getResourceAsStream("config.properties")) {
+            if (in == null)
+                throw new IOException("config.properties not found on the classpath.");
+            prop.load(in);
+        }
+
+        Path output = Paths.get(files.get(1));
+        Path checkpoint_path = Paths.get(checkpoint != null ? checkpoint : files.get(1) + ".checkpoint");
+
+        Botometer4JOptions options = new Botometer4JOptions()
+            .setMaxConnections(Math.max(Botometer4JOptions.DEFAULT_MAX_CONNECTIONS, concurrency));
+
+        try (Botometer4J botometer = new Botometer4J(prop.getProperty("mashape_key"), TwitterCredentials.fromProperties(prop), options);
+             Reader input = "-".equals(files.get(0))
+                 ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                 : Files.newBufferedReader(new File(files.get(0)).toPath(), StandardCharsets.UTF_8)) {
+            long count = new BatchRunner(botometer, concurrency, flush_every).run(input, output, checkpoint_path);
+            logger.info("{}{} accounts written to {}", method, count, output);
+        }
+    }
+}
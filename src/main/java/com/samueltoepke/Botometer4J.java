@@ -15,44 +15,105 @@ limitations under the License.
 */
 package com.samueltoepke;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.TimeZone;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.JsonNode;
-import com.mashape.unirest.http.Unirest;
-import com.mashape.unirest.http.exceptions.UnirestException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 
 import twitter4j.*;
-import twitter4j.conf.ConfigurationBuilder;
 
 /**
 * Botometer4J class. Object that creates a connection to the Twitter REST
 * API and the Botometer API to facilitate easy access to Botometer from
 * Java code.
 *
+* Meant to be long-lived: the Twitter instance and a pooled, keep-alive
+* HTTP client are created once in the constructor and shared by every
+* call, so a single object can be used from many threads at once. Call
+* close() when finished to release the connection pool.
+*
 * @author  Samuel Lee Toepke
 * @version 1.0
 */
-public class Botometer4J {
+public class Botometer4J implements Closeable {
 
     private final static Logger logger = LoggerFactory.getLogger(Botometer4J.class);
 
+    static final int MAX_TWEETS   = 200; // 200 Tweets per: https://market.mashape.com/OSoMe/botometer/overview
+    static final int MAX_MENTIONS = 100; // 100 Mentions per: https://market.mashape.com/OSoMe/botometer/overview
+    static final int MAX_TIMELINE_PAGE_SIZE = 200; // Largest 'count' allowed by statuses/user_timeline.
+    static final int MAX_LOOKUP_USERS = 100; // Most screen names per users/lookup.
+
+    static final String BOTOMETER_URL = "https://osome-botometer.p.mashape.com/2/check_account";
+
+    private static final String CLOSED_MESSAGE = "Botometer4J: client was closed before the lookup finished.";
+
     private String mashape_key = "";
-    private String consumer_key = "";
-    private String consumer_secret = "";
-    private String access_token = "";
-    private String access_token_secret = "";
+
+    private final CredentialPool           credential_pool;
+    private final CloseableHttpClient      http_client;
+    private final ExecutorService          fetch_executor;
+    private final boolean                  owns_fetch_executor;
+    private final ExecutorService          lookup_executor;
+    private final boolean                  owns_lookup_executor;
+    private final ScheduledExecutorService timeout_scheduler;
+    private final Set<CompletableFuture<?>> pending_lookups = ConcurrentHashMap.newKeySet();
+    private volatile boolean                closed          = false;
+    private final ScoreCache               score_cache;
+    private final TimelineStore            timeline_store;
+    private final RateLimitScheduler       rate_limiter;
+    private final String                   botometer_url;
+    private final ReplayArchive            record_to;
+    private final BotometerMetrics         metrics;
+    private final AtomicInteger            in_flight = new AtomicInteger();
+    private final double                   payload_dump_rate;
+    private final boolean                  gzip_payload;
+    private final PayloadProfile           payload_profile;
+    private final PayloadProfile           quick_profile;
+    private final double                   quick_clear_below;
+    private final double                   quick_flag_above;
+    private final RetryPolicy              retry_policy;
+    private final CircuitBreaker           circuit_breaker;
 
     /**
     * Constructor for the Botometer4J object. Requires accurate security
@@ -66,27 +127,147 @@ public class Botometer4J {
     * @return instantiated Botometer4J object.
     */
     public Botometer4J(String mashape_key, String consumer_key, String consumer_secret, String access_token, String access_token_secret) {
+        this(mashape_key, consumer_key, consumer_secret, access_token, access_token_secret, new Botometer4JOptions());
+    }
+
+    /**
+    * Constructor for the Botometer4J object. Requires accurate security
+    * strings to access the Twitter REST API and the Mashape API.
+    *
+    * @param mashape_key security key for Mashape.
+    * @param consumer_key security key for Twitter.
+    * @param consumer_secret security key for Twitter.
+    * @param access_token security key for Twitter.
+    * @param access_token_secret security key for Twitter.
+    * @param options connection pool size and timeouts.
+    * @return instantiated Botometer4J object.
+    */
+    public Botometer4J(String mashape_key, String consumer_key, String consumer_secret, String access_token, String access_token_secret, Botometer4JOptions options) {
+        this(mashape_key, Collections.singletonList(new TwitterCredentials(consumer_key, consumer_secret, access_token, access_token_secret)), options);
+    }
+
+    /**
+    * Constructor for the Botometer4J object with a pool of Twitter
+    * credential sets. Each account lookup is routed to the set with the
+    * most rate limit quota left, so throughput grows with the number of
+    * sets; see TwitterCredentials.fromProperties for loading them from
+    * config.properties.
+    *
+    * @param mashape_key security key for Mashape.
+    * @param twitter_credentials one or more Twitter credential sets.
+    * @param options connection pool size, timeouts and other tuning.
+    * @return instantiated Botometer4J object.
+    */
+    public Botometer4J(String mashape_key, List<TwitterCredentials> twitter_credentials, Botometer4JOptions options) {
         String method = "Botometer4J: ";
-        logger.debug(method + "STARTING.");
+        logger.debug("{}STARTING.", method);
+
+        boolean credentials_complete = twitter_credentials != null && !twitter_credentials.isEmpty();
+        if (credentials_complete) {
+            for (TwitterCredentials credentials : twitter_credentials)
+                credentials_complete &= credentials != null && credentials.isComplete();
+        }
 
-        if (StringUtils.isEmpty(mashape_key) || StringUtils.isEmpty(consumer_key) || StringUtils.isEmpty(consumer_secret) || StringUtils.isEmpty(access_token) || StringUtils.isEmpty(access_token_secret)) {
-            logger.error(method + "constructor arguments incorrect, make sure all populated.");
-            System.exit(1);
+        if (StringUtils.isEmpty(mashape_key) || !credentials_complete) {
+            logger.error("{}constructor arguments incorrect, make sure all populated.", method);
+            throw new IllegalArgumentException(method + "constructor arguments incorrect, make sure all populated.");
+        }
+
+        this.mashape_key = mashape_key;
+
+        logger.debug("{}mashape_key:         sha256 {}", method, CredentialPool.fingerprint(this.mashape_key));
+        logger.debug("{}twitter credentials: {}", method, twitter_credentials.size());
+
+        // Get Connections to Twitter Web Service, shared by every lookup.
+        logger.debug("{}get Connection to Twitter Web Service.", method);
+        this.credential_pool = new CredentialPool(twitter_credentials, options);
+
+        // Pooled, keep-alive connections to Botometer, shared by every lookup.
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+            cm.setMaxTotal(options.getMaxConnections());
+            cm.setDefaultMaxPerRoute(options.getMaxConnections());
+
+        RequestConfig rc = RequestConfig.custom()
+            .setConnectTimeout(options.getConnectTimeoutMs())
+            .setSocketTimeout(options.getSocketTimeoutMs())
+            .setConnectionRequestTimeout(options.getPoolWaitTimeoutMs())
+            .build();
+
+        this.http_client = HttpClients.custom()
+            .setConnectionManager(cm)
+            .setDefaultRequestConfig(rc)
+            .build();
+
+        // Threads for fetching the user, timeline and mentions concurrently.
+        if (options.getFetchExecutor() != null) {
+            this.fetch_executor      = options.getFetchExecutor();
+            this.owns_fetch_executor = false;
+        } else if (options.isParallelFetch()) {
+            AtomicInteger thread_count = new AtomicInteger();
+            this.fetch_executor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "botometer-twitter-" + thread_count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.owns_fetch_executor = true;
+        } else {
+            this.fetch_executor      = null;
+            this.owns_fetch_executor = false;
+        }
+
+        // Threads for the asynchronous API; idle ones are let go. The queue is
+        // bounded, and a lookup that doesn't fit fails its future.
+        if (options.getLookupExecutor() != null) {
+            this.lookup_executor      = options.getLookupExecutor();
+            this.owns_lookup_executor = false;
         } else {
-            this.mashape_key         = mashape_key;
-            this.consumer_key        = consumer_key;
-            this.consumer_secret     = consumer_secret;
-            this.access_token        = access_token;
-            this.access_token_secret = access_token_secret;
-
-            logger.debug(method + "mashape_key:         " + this.mashape_key);
-            logger.debug(method + "consumer_key:        " + this.consumer_key);
-            logger.debug(method + "consumer_secret:     " + this.consumer_secret);
-            logger.debug(method + "access_token:        " + this.access_token);
-            logger.debug(method + "access_token_secret: " + this.access_token_secret);
+            AtomicInteger thread_count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(options.getMaxConnections(), options.getMaxConnections(),
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(options.getMaxQueuedLookups()), r -> {
+                    Thread t = new Thread(r, "botometer-lookup-" + thread_count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            pool.allowCoreThreadTimeOut(true);
+
+            this.lookup_executor      = pool;
+            this.owns_lookup_executor = true;
+        }
+
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "botometer-timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timeout_scheduler = scheduler;
+
+        this.score_cache    = options.getScoreCache();
+        this.timeline_store = options.isIncrementalRefresh() ? new TimelineStore(options.getIncrementalRefreshAccounts()) : null;
+        this.rate_limiter   = options.getRateLimitScheduler();
+        this.botometer_url  = options.getBotometerUrl();
+        this.record_to      = options.getRecordTo();
+        this.metrics        = options.getMetrics();
+
+        this.payload_dump_rate = options.getPayloadDumpRate();
+        this.gzip_payload      = options.isGzipPayload();
+        this.retry_policy      = options.getRetryPolicy();
+        this.circuit_breaker   = options.getCircuitBreaker();
+
+        PayloadProfile payload_profile = options.getPayloadProfile();
+        PayloadProfile quick_profile   = options.getQuickProfile();
+        if (options.isOmitConstantFields()) {
+            payload_profile = payload_profile.without(PayloadProfile.Field.CONSTANT_FIELDS);
+            if (quick_profile != null)
+                quick_profile = quick_profile.without(PayloadProfile.Field.CONSTANT_FIELDS);
         }
 
-        logger.debug(method + "ENDING.");
+        this.payload_profile   = payload_profile;
+        this.quick_profile     = quick_profile;
+        this.quick_clear_below = options.getQuickClearBelow();
+        this.quick_flag_above  = options.getQuickFlagAbove();
+
+        logger.debug("{}ENDING.", method);
     }
 
    /**
@@ -99,378 +280,1046 @@ public class Botometer4J {
     * @return JSON String per the documentation https://market.mashape.com/OSoMe/botometer
     */
     public String getBotometerResponseForScreenName(String screen_name) {
+        return getBotometerResponseForScreenName(screen_name, CacheMode.USE);
+    }
+
+   /**
+    * Same as getBotometerResponseForScreenName(String), with control over
+    * how the lookup uses the ScoreCache set in Botometer4JOptions. Without
+    * a cache every mode behaves the same.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @param cache_mode whether to read, refresh or bypass the cache.
+    * @return JSON String per the documentation https://market.mashape.com/OSoMe/botometer,
+    * or an empty String if the lookup failed; getBotometerResultForScreenName says why.
+    */
+    public String getBotometerResponseForScreenName(String screen_name, CacheMode cache_mode) {
         String togo = "";
         String method = "getBotometerResponseForScreenName: ";
-        logger.debug(method + "STARTING.");
-        logger.debug(method + "input: " + screen_name);
 
-        // Making sure all necessary variables loaded.
-        if (StringUtils.isEmpty(this.mashape_key) || StringUtils.isEmpty(this.consumer_key) || StringUtils.isEmpty(this.consumer_secret) || StringUtils.isEmpty(this.access_token) || StringUtils.isEmpty(this.access_token_secret)) {
-            logger.error(method + "security arguments not loaded, run constructor first.");
-            System.exit(1);
+        try {
+            togo = getBotometerResultForScreenName(screen_name, cache_mode).getJson();
+        } catch (BotometerException be) {
+            logger.error("{}{}", method, be.getMessage());
         }
 
-        // Making sure input isn't empty.
-        if (StringUtils.isEmpty(screen_name)) {
-            logger.error(method + "screen_name argument incorrect, make sure populated.");
-            System.exit(1);
-        }
+        return togo;
+    }
 
-        // Get Connection to Twitter Web Service.
-        logger.debug(method + "get Connection to Twitter Web Service.");
-        ConfigurationBuilder cb = new ConfigurationBuilder();
-            cb.setDebugEnabled(true);
-            cb.setOAuthConsumerKey(this.consumer_key);
-            cb.setOAuthConsumerSecret(this.consumer_secret);
-            cb.setOAuthAccessToken(this.access_token);
-            cb.setOAuthAccessTokenSecret(this.access_token_secret);
-            cb.setJSONStoreEnabled(true);
+   /**
+    * Same as getBotometerResponseForScreenName(String), returning a typed
+    * result whose scores are decoded on first access instead of a String
+    * the caller has to parse again.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @return Botometer reply.
+    * @throws BotometerException if the account can't be scored, with the reason.
+    */
+    public BotometerResult getBotometerResultForScreenName(String screen_name) throws BotometerException {
+        return getBotometerResultForScreenName(screen_name, CacheMode.USE);
+    }
 
-        TwitterFactory tf = new TwitterFactory(cb.build());
-        Twitter twitter = tf.getInstance();
+   /**
+    * Same as getBotometerResultForScreenName(String), with control over
+    * how the lookup uses the ScoreCache set in Botometer4JOptions.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @param cache_mode whether to read, refresh or bypass the cache.
+    * @return Botometer reply.
+    * @throws BotometerException if the account can't be scored, with the reason.
+    */
+    public BotometerResult getBotometerResultForScreenName(String screen_name, CacheMode cache_mode) throws BotometerException {
+        String method = "getBotometerResultForScreenName: ";
+        logger.debug("{}STARTING.", method);
+        logger.debug("{}input: {}, cache_mode: {}", method, screen_name, cache_mode);
 
-        JsonObject mashape_request_body = new JsonObject();  // Will include User information, Tweets and Mentions
+        BotometerResult togo = lookup(screen_name, cache_mode);
 
-        try {
-            // 0. Get User Information
-            User   user     = twitter.showUser(screen_name);
+        logger.debug("{}ENDING.", method);
+        return togo;
+    }
 
-            JsonObject user_json = new JsonObject();
-            user_json.addProperty("id", Long.toString(user.getId()));
-            user_json.addProperty("screen_name", user.getScreenName());
+   /**
+    * Same as getBotometerResponseForScreenName(String), without blocking
+    * the caller. The lookup runs on the lookup executor set in
+    * Botometer4JOptions; the future fails with the BotometerException
+    * the lookup hit.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @return future JSON String per the documentation https://market.mashape.com/OSoMe/botometer
+    */
+    public CompletableFuture<String> getBotometerResponseForScreenNameAsync(String screen_name) {
+        return getBotometerResponseForScreenNameAsync(screen_name, 0, TimeUnit.MILLISECONDS);
+    }
 
-            mashape_request_body.add("user", user_json);
+   /**
+    * Same as getBotometerResponseForScreenNameAsync(String), failing with
+    * a TimeoutException if the lookup hasn't finished in time.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @param timeout how long to wait, counted from this call; 0 for no limit.
+    * @param unit unit of the timeout.
+    * @return future JSON String per the documentation https://market.mashape.com/OSoMe/botometer
+    */
+    public CompletableFuture<String> getBotometerResponseForScreenNameAsync(String screen_name, long timeout, TimeUnit unit) {
+        CompletableFuture<BotometerResult> result = getBotometerResultForScreenNameAsync(screen_name, CacheMode.USE, timeout, unit);
+        CompletableFuture<String>          togo   = result.thenApply(BotometerResult::getJson);
 
-            logger.debug(method + "User information retrieved.");
+        // Cancelling the String future has to reach the lookup behind it.
+        togo.whenComplete((json, failure) -> {
+            if (failure instanceof CancellationException)
+                result.cancel(true);
+        });
 
-            // 1. Get Twitter Stream Information
-            //https://stackoverflow.com/questions/17887984/is-it-possible-to-get-more-than-100-tweets
-            int pages = 1;
-            int max_tweets = 200; // 200 Tweets per: https://market.mashape.com/OSoMe/botometer/overview
-            List<Status> statuses = new ArrayList();
+        return togo;
+    }
 
-            for (;;) {
-                int size = statuses.size();
-                Paging page = new Paging(pages++, 101);
-                statuses.addAll(twitter.getUserTimeline(screen_name, page));
+   /**
+    * Non-blocking form of getBotometerResultForScreenName. Cancelling the
+    * returned future, or letting it time out, interrupts the lookup: it
+    * is dropped if still queued, and otherwise stops at its next rate
+    * limit wait or request. The future fails with a
+    * RejectedExecutionException when the lookup queue is full (see
+    * Botometer4JOptions.setMaxQueuedLookups), and with an
+    * IllegalStateException once the client is closed.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @param cache_mode whether to read, refresh or bypass the cache.
+    * @param timeout how long to wait, counted from this call; 0 for no limit.
+    * @param unit unit of the timeout.
+    * @return future Botometer reply.
+    */
+    public CompletableFuture<BotometerResult> getBotometerResultForScreenNameAsync(String screen_name, CacheMode cache_mode, long timeout, TimeUnit unit) {
+        CompletableFuture<BotometerResult> togo = new CompletableFuture<>();
 
-                if (statuses.size() == size || statuses.size() > max_tweets)
-                    break;
-            }
+        if (this.closed) {
+            togo.completeExceptionally(new IllegalStateException(CLOSED_MESSAGE));
+            return togo;
+        }
 
-            int count = 0;
-            JsonArray statuses_json = new JsonArray();
-            for (Status status : statuses) {
-                statuses_json.add(getJsonFromStatus(status));
+        // Tracked until done, so close() can fail the ones it drops from the queue.
+        this.pending_lookups.add(togo);
+        togo.whenComplete((result, failure) -> this.pending_lookups.remove(togo));
 
-                count++;
+        Future<?> task;
+        try {
+            task = this.lookup_executor.submit(() -> {
+                if (togo.isDone())
+                    return; // Cancelled or timed out while queued.
+
+                try {
+                    togo.complete(lookup(screen_name, cache_mode));
+                } catch (BotometerException | RuntimeException e) {
+                    togo.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            togo.completeExceptionally(ree);
+            return togo;
+        }
 
-                if (count == max_tweets)
-                    break;
+        if (timeout > 0) {
+            try {
+                ScheduledFuture<?> timer = this.timeout_scheduler.schedule(
+                    () -> togo.completeExceptionally(new TimeoutException("Botometer lookup for " + screen_name + " timed out.")),
+                    timeout, unit);
+                togo.whenComplete((result, failure) -> timer.cancel(false));
+            } catch (RejectedExecutionException ree) {
+                // close() ran since the check above; the caller's executor may still run the task.
+                togo.completeExceptionally(new IllegalStateException(CLOSED_MESSAGE));
             }
+        }
+
+        togo.whenComplete((result, failure) -> {
+            if (failure instanceof CancellationException || failure instanceof TimeoutException)
+                task.cancel(true);
+        });
+
+        return togo;
+    }
+
+   /**
+    * The lookup behind every getBotometer* method: cache, Twitter fetch,
+    * payload build and Botometer POST, then the full tier if the quick
+    * score didn't settle it.
+    */
+    private BotometerResult lookup(String screen_name, CacheMode cache_mode) throws BotometerException {
+        BotometerResult togo = null;
 
-            mashape_request_body.add("timeline", statuses_json);
-            logger.debug(method + "# Tweets retrieved: " + statuses.size());
+        // A hit on the screen name skips Twitter and Botometer entirely;
+        // a hit on the resolved user id (e.g. after a rename) costs only the
+        // users/show that resolved it, not the timeline and mentions.
+        String cached = (cache_mode == CacheMode.USE) ? getCachedResponse(screen_name) : null;
 
-            // 2. Get Mentions Information
-            // https://stackoverflow.com/questions/18800610/how-to-retrieve-more-than-100-results-using-twitter4j
-            List<Status> mentions = new ArrayList<>();
+        if (cached != null) {
+            togo = BotometerResult.fromJson(cached);
+        } else {
+            User user = null;
+            if (cache_mode == CacheMode.USE && this.score_cache != null) {
+                user   = resolveUser(screen_name);
+                cached = getCachedResponse(screen_name, user);
+            }
 
-            Query query = new Query("@" + screen_name);
-            query.setCount(100); // 100 Mentions per: https://market.mashape.com/OSoMe/botometer/overview
-            query.setResultType(Query.RECENT);
+            if (cached != null) {
+                togo = BotometerResult.fromJson(cached);
+            } else {
+                AccountData account_data = getAccountData(screen_name, user);
+                HttpEntity  payload      = getPayload(account_data);
+                togo = escalate(account_data, postPayload(account_data, payload));
 
-            QueryResult result = twitter.search(query);
-            mentions.addAll(result.getTweets());
+                if (cache_mode != CacheMode.BYPASS)
+                    cacheResponse(account_data, togo.getJson());
+            }
+        }
 
-            JsonArray mentions_array = new JsonArray();
-            for (Status status : mentions)
-                mentions_array.add(getJsonFromStatus(status));
+        return togo;
+    }
 
-                mashape_request_body.add("mentions", mentions_array);
-                logger.debug(method + "# Mentions retrieved: " + mentions.size());
-                logger.debug(method + "Completed JSON Payload: " + mashape_request_body.toString());
+   /**
+    * Second tier of a quick screen. Keeps the quick result when it is
+    * conclusive (see needsFullScore). Otherwise fetches the account again
+    * with the payload profile, reusing the resolved user, and scores it
+    * in full.
+    *
+    * @param account_data user, timeline and mentions the result was scored from.
+    * @param result Botometer reply for account_data.
+    * @return the result that settles the account.
+    * @throws BotometerException if the full score failed, with the reason.
+    */
+    BotometerResult escalate(AccountData account_data, BotometerResult result) throws BotometerException {
+        if (!needsFullScore(account_data, result))
+            return result;
 
-                // 3. Create/Execute Mashape Request using Unirest
-                // https://market.mashape.com/OSoMe/botometer
-                HttpResponse<JsonNode> response = Unirest.post("https://osome-botometer.p.mashape.com/2/check_account")
-                .header("X-Mashape-Key", this.mashape_key)
-                .header("Content-Type", "application/json")
-                .header("Accept", "application/json")
-                .body(mashape_request_body.toString())
-                .asJson();
+        AccountData full = getAccountData(account_data.getScreenName(), account_data.getUser(), this.payload_profile);
 
-                logger.debug("Mashape Response Status: " + response.getStatus());
-                logger.debug("Mashape Response Body:   " + response.getBody());
+        return postPayload(full, getPayload(full));
+    }
 
-                togo = response.getBody().toString();
+   /**
+    * Whether a result only settles the account once it has been scored
+    * again with the payload profile: the account was fetched with the
+    * quick profile set with Botometer4JOptions.setQuickScreen, and its
+    * score falls inside the band or is missing.
+    *
+    * @param account_data user, timeline and mentions the result was scored from.
+    * @param result Botometer reply for account_data.
+    * @return true if the account should be fetched and scored again with getPayloadProfile().
+    */
+    boolean needsFullScore(AccountData account_data, BotometerResult result) {
+        if (this.quick_profile == null || this.quick_profile.equals(this.payload_profile) || !this.quick_profile.equals(account_data.getProfile()))
+            return false;
 
-                Unirest.shutdown();
+        String method = "needsFullScore: ";
+        String screen_name = account_data.getScreenName();
 
-        } catch (TwitterException te) {
-            te.printStackTrace();
-            logger.error(method + " Twitter Exception.");
-            logger.error(te.toString());
-        } catch (IOException io) {
-            io.printStackTrace();
-            logger.error(io.toString());
-        } catch (UnirestException ue) {
-            ue.printStackTrace();
-            logger.error(ue.toString());
+        Double score = (result.getUniversalScore() != null) ? result.getUniversalScore() : result.getEnglishScore();
+        if (score != null && (score < this.quick_clear_below || score > this.quick_flag_above)) {
+            logger.debug("{}{} settled by quick score {}.", method, screen_name, score);
+            return false;
         }
 
-        logger.debug(method + "ENDING.");
+        logger.debug("{}{} quick score {} is inconclusive, scoring in full.", method, screen_name, score);
+        return true;
+    }
+
+   /**
+    * @return profile for full scores, with the options applied; the quick tier's second pass uses it too.
+    */
+    PayloadProfile getPayloadProfile() {
+        return this.payload_profile;
+    }
+
+   /**
+    * @return the cache set in Botometer4JOptions, e.g. for its hit/miss counters; null if none.
+    */
+    public ScoreCache getScoreCache() {
+        return this.score_cache;
+    }
+
+   /**
+    * @return number of Twitter credential sets the client rotates through.
+    */
+    int getCredentialCount() {
+        return this.credential_pool.size();
+    }
+
+   /**
+    * Releases the pooled HTTP connections and any fetch threads the
+    * client created for itself. The object can't be used
+    * after it has been closed. A ScoreCache passed in through
+    * Botometer4JOptions belongs to the caller and is left open.
+    * Asynchronous lookups still queued or running fail with an
+    * IllegalStateException.
+    */
+    @Override
+    public void close() throws IOException {
+        String method = "close: ";
+        logger.debug("{}STARTING.", method);
+
+        this.closed = true;
+
+        if (this.owns_lookup_executor)
+            this.lookup_executor.shutdownNow();
+
+        // shutdownNow drops queued lookups without running them; their futures
+        // would otherwise never complete.
+        for (CompletableFuture<?> lookup : this.pending_lookups)
+            lookup.completeExceptionally(new IllegalStateException(CLOSED_MESSAGE));
+
+        this.http_client.close();
+
+        if (this.owns_fetch_executor)
+            this.fetch_executor.shutdown();
+
+        // Timers go last; until now they could still fail a lookup with its timeout.
+        this.timeout_scheduler.shutdownNow();
+
+        logger.debug("{}ENDING.", method);
+    }
+
+   /**
+    * Scores a batch of Twitter screen names. Each name is pushed through a
+    * BotometerPipeline (Twitter fetch, payload build, Botometer POST) so the
+    * network calls for one account overlap with the work on other accounts.
+    * The map is returned immediately, one future per distinct screen name,
+    * in the iteration order of the input.
+    *
+    * @param screen_names The Twitter users for which to get the data.
+    * @return Map of screen name to the future JSON String for that user.
+    */
+    public Map<String, CompletableFuture<String>> scoreAll(Collection<String> screen_names) {
+        String method = "scoreAll: ";
+        logger.debug("{}STARTING.", method);
+
+        // Twitter fetching scales with the number of credential sets.
+        final BotometerPipeline pipeline = new BotometerPipeline(this,
+            BotometerPipeline.DEFAULT_FETCH_THREADS * getCredentialCount(),
+            BotometerPipeline.DEFAULT_BUILD_THREADS,
+            BotometerPipeline.DEFAULT_POST_THREADS,
+            BotometerPipeline.DEFAULT_QUEUE_CAPACITY);
+        Map<String, CompletableFuture<String>> togo = pipeline.scoreAll(screen_names);
+
+        // Release the pipeline threads once every account has been scored.
+        CompletableFuture.allOf(togo.values().toArray(new CompletableFuture<?>[0])).whenComplete((v, t) -> pipeline.close());
+
+        logger.debug("{}ENDING.", method);
         return togo;
     }
 
    /**
-    * Takes a Status, and create a JSON object that
-    * can be parsed by the Botometer web service. Direct deserialization
-    * using Gson would be ideal, but the fields don't line up exactly.
+    * First pipeline stage. Reaches out to the Twitter REST API and pulls the
+    * user, the user's timeline and the user's mentions.
     *
-    * @param status object.
-    * @return JsonObject
+    * @param screen_name The Twitter user for which to get the data.
+    * @return AccountData holding everything needed to build the payload.
     */
-    private JsonObject getJsonFromStatus(Status status) {
-        JsonObject togo = null;
-        String method = "getJsonFromStatus: ";
-        logger.debug(method + "STARTING.");
+    AccountData getAccountData(String screen_name) throws BotometerException {
+        return getAccountData(screen_name, null);
+    }
 
-        if (status == null) {
-            logger.error(method + "constructor arguments incorrect, make sure all populated.");
-            System.exit(1);
+   /**
+    * Same as getAccountData(String), for a user already resolved through
+    * lookupUsers, so users/show isn't called again.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @param prefetched the user, or null to look it up.
+    * @return AccountData holding everything needed to build the payload.
+    */
+    AccountData getAccountData(String screen_name, User prefetched) throws BotometerException {
+        return getAccountData(screen_name, prefetched, (this.quick_profile != null) ? this.quick_profile : this.payload_profile);
+    }
+
+   /**
+    * Same as getAccountData(String, User), fetching only as many statuses
+    * and mentions as the profile sends. A section limited to 0 isn't
+    * requested at all.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @param prefetched the user, or null to look it up.
+    * @param profile limits to fetch for.
+    * @return AccountData holding everything needed to build the payload.
+    */
+    AccountData getAccountData(String screen_name, User prefetched, PayloadProfile profile) throws BotometerException {
+        String method = "getAccountData: ";
+        logger.debug("{}STARTING.", method);
+
+        // Making sure input isn't empty.
+        if (StringUtils.isEmpty(screen_name))
+            throw new BotometerException(BotometerException.Reason.INVALID_INPUT, screen_name, -1, "screen_name argument incorrect, make sure populated.", null);
+
+        if (prefetched != null)
+            checkVisible(prefetched, screen_name);
+
+        AccountData togo = null;
+
+        // The whole lookup runs on the credential set with the most quota left
+        // on the endpoints it is going to call.
+        List<String> endpoints = new ArrayList<>(3);
+        if (prefetched == null)
+            endpoints.add(RateLimitScheduler.USERS_SHOW);
+        if (profile.getMaxTweets() > 0)
+            endpoints.add(RateLimitScheduler.USER_TIMELINE);
+        if (profile.getMaxMentions() > 0)
+            endpoints.add(RateLimitScheduler.SEARCH_TWEETS);
+
+        CredentialPool.Member twitter = this.credential_pool.select(endpoints.toArray(new String[0]));
+
+        // The user the timeline and mentions were asked for, once known.
+        User                    resolved      = prefetched;
+        CompletableFuture<User> resolved_user = null;
+
+        try {
+            if (this.fetch_executor == null) {
+                // A protected account fails before its timeline is asked for.
+                resolved = (prefetched != null) ? prefetched : getUser(twitter, screen_name);
+
+                User         user     = checkVisible(resolved, screen_name);
+                List<Status> timeline = getTimeline(twitter, screen_name, profile.getMaxTweets());
+                List<Status> mentions = getMentions(twitter, screen_name, profile.getMaxMentions());
+
+                togo = new AccountData(screen_name, user, timeline, mentions, profile);
+            } else {
+                // User, timeline and mentions don't depend on each other, so all
+                // three are sent at once and joined before the payload is built.
+                // The first failure drops whatever hasn't been sent yet. If the
+                // user turns out to be protected, whatever came back for its
+                // tweets is thrown away, and a 401 for them means PROTECTED.
+                FetchGroup group = new FetchGroup();
+
+                CompletableFuture<User>         user     = (prefetched != null) ? CompletableFuture.completedFuture(prefetched) : group.fetch(() -> getUser(twitter, screen_name));
+                CompletableFuture<List<Status>> timeline = group.fetch(() -> getTimeline(twitter, screen_name, profile.getMaxTweets()));
+                CompletableFuture<List<Status>> mentions = group.fetch(() -> getMentions(twitter, screen_name, profile.getMaxMentions()));
+
+                resolved_user = user;
+                awaitAll(user, timeline, mentions);
+
+                togo = new AccountData(screen_name, checkVisible(user.join(), screen_name), timeline.join(), mentions.join(), profile);
+            }
+        } catch (TwitterException te) {
+            if (resolved_user != null && resolved_user.isDone() && !resolved_user.isCompletedExceptionally())
+                resolved = resolved_user.join();
+
+            throw BotometerException.fromTwitter(te, screen_name, resolved);
         }
 
-        JsonObject status_json = new JsonObject();
-
-        status_json.addProperty("id", status.getId());
-        status_json.addProperty("id_str", Long.toString(status.getId()));
-        status_json.addProperty("possibly_sensitive", status.isPossiblySensitive());
-        status_json.addProperty("favorited", status.isFavorited());
-        status_json.addProperty("lang", status.getLang());
-        status_json.addProperty("retweeted", status.isRetweeted());
-        status_json.addProperty("retweet_count", status.getRetweetCount());
-        status_json.addProperty("truncated", status.isTruncated());
-        status_json.addProperty("contributors", (String) null); // All 'null' in Botometer sample payload.
-        status_json.addProperty("favorite_count", status.getFavoriteCount());
-        status_json.addProperty("source", status.getSource());
-        status_json.addProperty("text", status.getText());
-        status_json.addProperty("in_reply_to_screen_name", status.getInReplyToScreenName());
-        status_json.addProperty("coordinates", (String) null); // All 'null' in Botometer sample payload.
-        status_json.addProperty("geo", (String) null);         // All 'null' in Botometer sample payload.
-        status_json.addProperty("place", (String) null);       // All 'null' in Botometer sample payload.
-        status_json.addProperty("created_at", getFormattedDate(status.getCreatedAt()));
-
-        if (status.getInReplyToUserId() == -1) {
-            status_json.addProperty("in_reply_to_user_id", (String) null);
-            status_json.addProperty("in_reply_to_user_id_str", (String) null);
-        } else {
-            status_json.addProperty("in_reply_to_user_id", status.getInReplyToUserId());
-            status_json.addProperty("in_reply_to_user_id_str", Long.toString(status.getInReplyToUserId()));
+        logger.debug("{}ENDING.", method);
+        return togo;
+    }
+
+   /**
+    * Resolves many screen names with one users/lookup call per
+    * MAX_LOOKUP_USERS, instead of a users/show call each. Missing and
+    * suspended accounts are simply absent from the result.
+    *
+    * @param screen_names The Twitter users to resolve.
+    * @return the users found, keyed by lower case screen name.
+    */
+    Map<String, User> lookupUsers(List<String> screen_names) throws BotometerException {
+        String method = "lookupUsers: ";
+        logger.debug("{}STARTING.", method);
+
+        Map<String, User> togo = new HashMap<>();
+
+        for (int from = 0; from < screen_names.size(); from += MAX_LOOKUP_USERS) {
+            String[] group = screen_names.subList(from, Math.min(from + MAX_LOOKUP_USERS, screen_names.size())).toArray(new String[0]);
+            CredentialPool.Member twitter = this.credential_pool.select(RateLimitScheduler.USERS_LOOKUP);
+
+            try {
+                for (User user : rateLimited(twitter, RateLimitScheduler.USERS_LOOKUP, () -> twitter.source.lookupUsers(group)))
+                    togo.put(user.getScreenName().toLowerCase(Locale.ROOT), user);
+            } catch (TwitterException te) {
+                // users/lookup answers 404 when none of the names exist.
+                if (te.getStatusCode() != 404)
+                    throw BotometerException.fromTwitter(te, group[0] + " and " + (group.length - 1) + " more");
+            }
         }
 
-        if (status.getInReplyToStatusId() == -1) {
-            status_json.addProperty("in_reply_to_status_id", (String) null);
-            status_json.addProperty("in_reply_to_status_id_str", (String) null);
-        } else {
-            status_json.addProperty("in_reply_to_status_id", status.getInReplyToStatusId());
-            status_json.addProperty("in_reply_to_status_id_str", Long.toString(status.getInReplyToStatusId()));
+        logger.debug("{}{} of {} users resolved.", method, togo.size(), screen_names.size());
+        logger.debug("{}ENDING.", method);
+        return togo;
+    }
+
+   /**
+    * Resolves a single screen name with users/show, on the credential set
+    * with the most users/show quota left.
+    *
+    * @param screen_name The Twitter user to resolve.
+    * @return the user.
+    * @throws BotometerException if the user can't be resolved, with the reason.
+    */
+    User resolveUser(String screen_name) throws BotometerException {
+        if (StringUtils.isEmpty(screen_name))
+            throw new BotometerException(BotometerException.Reason.INVALID_INPUT, screen_name, -1, "screen_name argument incorrect, make sure populated.", null);
+
+        CredentialPool.Member twitter = this.credential_pool.select(RateLimitScheduler.USERS_SHOW);
+
+        try {
+            return getUser(twitter, screen_name);
+        } catch (TwitterException te) {
+            throw BotometerException.fromTwitter(te, screen_name);
         }
+    }
 
-        if (status.getQuotedStatus() == null) // Field "only surfaces when the Tweet is a 'quote tweet'." https://developer.twitter.com/en/docs/tweets/data-dictionary/overview/tweet-object
-            status_json.addProperty("is_quote_status", false);
-        else
-            status_json.addProperty("is_quote_status", true);
+    private static User checkVisible(User user, String screen_name) throws BotometerException {
+        if (user.isProtected())
+            throw new BotometerException(BotometerException.Reason.PROTECTED, screen_name, -1, "tweets are protected.", null);
 
-        JsonArray urls_array = new JsonArray();
-        URLEntity[] url_entities = status.getURLEntities();
+        return user;
+    }
 
-        for (int i = 0; i < url_entities.length; i++) {
-            JsonObject temp_entity = new JsonObject();
-            JsonArray temp_array = new JsonArray();
+    private User getUser(CredentialPool.Member twitter, String screen_name) throws TwitterException {
+        String method = "getUser: ";
 
-            temp_entity.addProperty("url", url_entities[i].getURL());
-            temp_entity.addProperty("expanded_url", url_entities[i].getExpandedURL());
-            temp_entity.addProperty("display_url", url_entities[i].getDisplayURL());
+        // 0. Get User Information
+        User togo = rateLimited(twitter, RateLimitScheduler.USERS_SHOW, () -> twitter.source.showUser(screen_name));
+        logger.debug("{}User information retrieved.", method);
 
-            temp_array.add(url_entities[i].getStart());
-            temp_array.add(url_entities[i].getEnd());
-            temp_entity.add("indices", temp_array);
+        return togo;
+    }
 
-            urls_array.add(temp_entity);
+    private List<Status> getTimeline(CredentialPool.Member twitter, String screen_name, int limit) throws TwitterException {
+        String method = "getTimeline: ";
+
+        if (limit == 0)
+            return new ArrayList<>();
+
+        // 1. Get Twitter Stream Information
+        // Ask for exactly what the payload keeps, walking back from the newest
+        // status with max_id rather than page numbers, so pages never overlap.
+        // https://developer.twitter.com/en/docs/tweets/timelines/guides/working-with-timelines
+        // In incremental mode only statuses newer than the stored window are asked for.
+        TimelineStore.Window stored   = (this.timeline_store == null) ? null : this.timeline_store.getTimeline(screen_name, limit);
+        long                 since_id = TimelineStore.newestId(stored);
+
+        List<Status> statuses = new ArrayList<>(limit);
+        long max_id = -1;
+
+        while (statuses.size() < limit) {
+            int count = Math.min(MAX_TIMELINE_PAGE_SIZE, limit - statuses.size());
+
+            Paging page = new Paging();
+            page.setCount(count);
+            if (max_id != -1)
+                page.setMaxId(max_id);
+            if (since_id != -1)
+                page.setSinceId(since_id);
+
+            // Twitter applies count before it drops deleted statuses, so a short
+            // page isn't the end of the timeline; only an empty one is.
+            List<Status> batch = rateLimited(twitter, RateLimitScheduler.USER_TIMELINE, () -> twitter.source.getUserTimeline(screen_name, page));
+            if (batch.isEmpty())
+                break;
+
+            for (Status status : batch) {
+                if (statuses.size() == limit)
+                    break;
+                statuses.add(status);
+            }
+
+            max_id = batch.get(batch.size() - 1).getId() - 1;
         }
 
-        JsonArray symbols_array = new JsonArray(); // All 'null' in Botometer sample payload.
+        logger.debug("{}# Tweets retrieved: {}", method, statuses.size());
+        this.metrics.statusesFetched(RateLimitScheduler.USER_TIMELINE, statuses.size());
+
+        if (this.timeline_store != null)
+            statuses = this.timeline_store.putTimeline(screen_name, stored, statuses, limit);
+
+        return statuses;
+    }
+
+    private List<Status> getMentions(CredentialPool.Member twitter, String screen_name, int limit) throws TwitterException {
+        String method = "getMentions: ";
+
+        if (limit == 0)
+            return new ArrayList<>();
+
+        // 2. Get Mentions Information
+        // https://stackoverflow.com/questions/18800610/how-to-retrieve-more-than-100-results-using-twitter4j
+        TimelineStore.Window stored   = (this.timeline_store == null) ? null : this.timeline_store.getMentions(screen_name, limit);
+        long                 since_id = TimelineStore.newestId(stored);
+
+        List<Status> mentions = new ArrayList<>();
 
-        JsonArray hashtags_array = new JsonArray();
-        HashtagEntity[] hashtag_entities = status.getHashtagEntities();
+        Query query = new Query("@" + screen_name);
+        query.setCount(limit);
+        query.setResultType(Query.RECENT);
+        if (since_id != -1)
+            query.setSinceId(since_id);
 
-        for (int i = 0; i < hashtag_entities.length; i++) {
-            JsonObject temp_entity = new JsonObject();
-            JsonArray temp_array = new JsonArray();
+        QueryResult result = rateLimited(twitter, RateLimitScheduler.SEARCH_TWEETS, () -> twitter.source.search(query));
+        mentions.addAll(result.getTweets());
 
-            temp_entity.addProperty("text", hashtag_entities[i].getText());
+        logger.debug("{}# Mentions retrieved: {}", method, mentions.size());
+        this.metrics.statusesFetched(RateLimitScheduler.SEARCH_TWEETS, mentions.size());
 
-            temp_array.add(hashtag_entities[i].getStart());
-            temp_array.add(hashtag_entities[i].getEnd());
-            temp_entity.add("indices", temp_array);
+        if (this.timeline_store != null)
+            mentions = this.timeline_store.putMentions(screen_name, stored, mentions, limit);
 
-            hashtags_array.add(temp_entity);
+        return mentions;
+    }
+
+    private interface TwitterCall<T> {
+        T call() throws TwitterException;
+    }
+
+   /**
+    * Runs a Twitter request under the rate limit scheduler. It waits for
+    * admission, records the quota reported with the response, and when
+    * Twitter refuses the request for being over the limit, waits for the
+    * window to reset and sends it again, up to MAX_RATE_LIMITED_RETRIES
+    * times, instead of failing.
+    */
+    private <T extends TwitterResponse> T rateLimited(CredentialPool.Member twitter, String endpoint, TwitterCall<T> call) throws TwitterException {
+        String key = twitter.key(endpoint);
+        int failures = 0;
+        int rate_limited = 0;
+
+        for (;;) {
+            if (this.rate_limiter != null) {
+                try {
+                    this.rate_limiter.acquire(key);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new TwitterException("Interrupted waiting for rate limit on " + key, ie);
+                }
+            }
+
+            try {
+                T togo = measured(endpoint, call);
+                if (this.rate_limiter != null)
+                    report(key, togo.getRateLimitStatus());
+                return togo;
+            } catch (TwitterException te) {
+                if (te.exceededRateLimitation() && this.rate_limiter != null) {
+                    // Still refused after several resets; give up rather than wait forever.
+                    if (++rate_limited > RateLimitScheduler.MAX_RATE_LIMITED_RETRIES)
+                        throw te;
+
+                    long reset_at_ms;
+                    if (te.getRateLimitStatus() != null)
+                        reset_at_ms = te.getRateLimitStatus().getResetTimeInSeconds() * 1000L;
+                    else if (te.getRetryAfter() > 0)
+                        reset_at_ms = System.currentTimeMillis() + te.getRetryAfter() * 1000L;
+                    else
+                        reset_at_ms = System.currentTimeMillis() + RateLimitScheduler.DEFAULT_RETRY_AFTER_MS;
+
+                    this.rate_limiter.exhausted(key, reset_at_ms);
+                    continue;
+                }
+
+                if (this.rate_limiter != null)
+                    report(key, te.getRateLimitStatus());
+
+                // Network errors and 5xx are worth another try; anything else isn't.
+                if (!BotometerException.isTransient(te) || !this.retry_policy.canRetry(++failures))
+                    throw te;
+
+                logger.warn("rateLimited: {} failed with {}, retry {} of {}.", endpoint, te.getStatusCode(), failures, this.retry_policy.getMaxAttempts() - 1);
+
+                try {
+                    this.retry_policy.backoff(failures);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new TwitterException("Interrupted backing off on " + key, ie);
+                }
+            }
         }
+    }
+
+   /**
+    * Passes the quota reported with a Twitter response to the scheduler,
+    * or tells it none came back.
+    */
+    private void report(String key, RateLimitStatus status) {
+        if (status != null)
+            this.rate_limiter.update(key, status);
+        else
+            this.rate_limiter.unreported(key);
+    }
+
+   /**
+    * Runs one Twitter request, reporting its latency, any failure and the
+    * change in requests in flight to the metrics listener.
+    */
+    private <T> T measured(String endpoint, TwitterCall<T> call) throws TwitterException {
+        this.metrics.inFlight(this.in_flight.incrementAndGet());
+        long started = System.nanoTime();
 
-        JsonArray user_mentions_array = new JsonArray();
-        UserMentionEntity[] user_mention_entities = status.getUserMentionEntities();
+        try {
+            return call.call();
+        } catch (TwitterException te) {
+            this.metrics.error(endpoint, te.getStatusCode());
+            throw te;
+        } finally {
+            this.metrics.latency(endpoint, System.nanoTime() - started);
+            this.metrics.inFlight(this.in_flight.decrementAndGet());
+        }
+    }
 
-        for (int i = 0; i < user_mention_entities.length; i++) {
-            JsonObject temp_entity = new JsonObject();
-            JsonArray temp_array = new JsonArray();
+   /**
+    * The parallel requests of one getAccountData call. The first one to
+    * fail cancels the others; one that hasn't started yet is then never
+    * sent, so a failed lookup doesn't keep spending quota. A 401 doesn't
+    * cancel the user request, since a protected account's timeline
+    * answers 401 and only the user says whether that is what happened.
+    */
+    private final class FetchGroup {
+        private final List<CompletableFuture<?>> futures = new CopyOnWriteArrayList<>();
+        private volatile boolean                 failed  = false;
+
+        <T> CompletableFuture<T> fetch(TwitterCall<T> call) {
+            CompletableFuture<T> togo = CompletableFuture.supplyAsync(() -> {
+                if (this.failed)
+                    throw new CancellationException("another request for the account failed.");
+
+                try {
+                    return call.call();
+                } catch (TwitterException te) {
+                    throw new CompletionException(te);
+                }
+            }, fetch_executor);
+
+            this.futures.add(togo);
+            togo.whenComplete((result, failure) -> {
+                if (failure != null && !isUnauthorized(failure))
+                    cancelAll();
+            });
+
+            return togo;
+        }
 
-            temp_entity.addProperty("name", user_mention_entities[i].getName());
-            temp_entity.addProperty("id_str", Long.toString(user_mention_entities[i].getId()));
-            temp_entity.addProperty("id", user_mention_entities[i].getId());
-            temp_entity.addProperty("screen_name", user_mention_entities[i].getScreenName());
+        private boolean isUnauthorized(Throwable failure) {
+            Throwable cause = (failure instanceof CompletionException) ? failure.getCause() : failure;
+            return cause instanceof TwitterException && ((TwitterException) cause).getStatusCode() == 401;
+        }
 
-            temp_array.add(user_mention_entities[i].getStart());
-            temp_array.add(user_mention_entities[i].getEnd());
-            temp_entity.add("indices", temp_array);
+        private void cancelAll() {
+            this.failed = true;
+            for (CompletableFuture<?> future : this.futures)
+                future.cancel(true);
+        }
+    }
 
-            user_mentions_array.add(temp_entity);
+   /**
+    * Joins a parallel fetch, handing back the TwitterException it failed
+    * with so callers see the same exception as in the sequential path.
+    * Requests cancelled because of that failure aren't reported themselves.
+    */
+    private static void awaitAll(CompletableFuture<?>... futures) throws TwitterException {
+        CompletionException other = null;
+
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (CancellationException ce) {
+                // Dropped after another request failed.
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof TwitterException)
+                    throw (TwitterException) ce.getCause();
+                if (other == null && !(ce.getCause() instanceof CancellationException))
+                    other = ce;
+            }
         }
 
-        JsonObject entities = new JsonObject();
-        entities.add("urls", urls_array);
-        entities.add("symbols", symbols_array);
-        entities.add("user_mentions", user_mentions_array);
-        entities.add("hashtags", hashtags_array);
+        if (other != null)
+            throw other;
+    }
+
+   /**
+    * Looks up a cached response by screen name, before anything is
+    * fetched from Twitter.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @return cached JSON String, or null if there's no cache or no entry.
+    */
+    String getCachedResponse(String screen_name) {
+        if (this.score_cache == null)
+            return null;
+
+        return this.score_cache.get(screenNameKey(screen_name));
+    }
 
-        status_json.add("entities", entities);
+   /**
+    * Looks up a cached response by the user id resolved from Twitter,
+    * and re-links the requested screen name to it on a hit.
+    *
+    * @param account_data user, timeline and mentions from getAccountData.
+    * @return cached JSON String, or null if there's no cache or no entry.
+    */
+    String getCachedResponse(AccountData account_data) {
+        return getCachedResponse(account_data.getScreenName(), account_data.getUser());
+    }
 
-        if (status.getRetweetedStatus() != null)
-            status_json.add("retweeted_status", getJsonFromStatus(status.getRetweetedStatus()));
+   /**
+    * Same as getCachedResponse(AccountData), for a user resolved before
+    * its timeline and mentions are fetched.
+    *
+    * @param screen_name The Twitter user as requested.
+    * @param user the user it resolved to.
+    * @return cached JSON String, or null if there's no cache or no entry.
+    */
+    String getCachedResponse(String screen_name, User user) {
+        if (this.score_cache == null)
+            return null;
 
-        status_json.add("user", getJsonFromUser(status.getUser()));
+        String togo = this.score_cache.get(userIdKey(user));
 
-        togo = status_json;
+        if (togo != null)
+            this.score_cache.put(screenNameKey(screen_name), togo);
 
-        logger.debug(method + "ENDING.");
         return togo;
     }
 
    /**
-    * Takes a User (from a Status), and create a JSON object that
-    * can be parsed by the Botometer web service. Direct deserialization
-    * using Gson would be ideal, but the fields don't line up exactly.
+    * Stores a Botometer response under both the user id and the screen name.
     *
-    * @param user object.
-    * @return JsonObject
+    * @param account_data user, timeline and mentions from getAccountData.
+    * @param response JSON String returned by Botometer.
     */
-    private JsonObject getJsonFromUser(User user) {
-        JsonObject togo = null;
-        String method = "getJsonFromUser: ";
-        logger.debug(method + "STARTING.");
+    void cacheResponse(AccountData account_data, String response) {
+        if (this.score_cache == null || StringUtils.isEmpty(response))
+            return;
+
+        this.score_cache.put(userIdKey(account_data.getUser()), response);
+        this.score_cache.put(screenNameKey(account_data.getScreenName()), response);
+        this.score_cache.put(screenNameKey(account_data.getUser().getScreenName()), response);
+    }
+
+    private static String userIdKey(User user) {
+        return "id:" + user.getId();
+    }
+
+    private static String screenNameKey(String screen_name) {
+        return "screen_name:" + screen_name.toLowerCase(Locale.ROOT);
+    }
 
-        if (user == null) {
-            logger.error(method + "constructor arguments incorrect, make sure all populated.");
-            System.exit(1);
+   /**
+    * Second pipeline stage. Prepares the Botometer JSON payload from the
+    * data pulled from Twitter. The payload is serialized straight into
+    * the request body while it is being POSTed, gzipped if the options
+    * ask for it.
+    *
+    * @param account_data user, timeline and mentions from getAccountData.
+    * @return request body to be POSTed to Botometer.
+    */
+    HttpEntity getPayload(AccountData account_data) {
+        String method = "getPayload: ";
+        logger.debug("{}STARTING.", method);
+
+        PayloadProfile profile = account_data.getProfile();
+
+        PayloadEntity togo = new PayloadEntity(account_data, profile, this.metrics, this.gzip_payload);
+        this.metrics.statusesUsed(Math.min(account_data.getTimeline().size(), profile.getMaxTweets())
+            + Math.min(account_data.getMentions().size(), profile.getMaxMentions()));
+
+        // A payload runs to hundreds of KB, so it is only serialized for the
+        // log when TRACE is on and this one is picked by the dump rate.
+        if (logger.isTraceEnabled() && isPayloadDumpSampled()) {
+            StringWriter payload = new StringWriter();
+            try {
+                togo.writeTo(payload);
+                logger.trace("{}Completed JSON Payload: {}", method, payload);
+            } catch (IOException io) {
+                logger.trace("{}payload dump failed, {}", method, io.toString());
+            }
         }
 
-        JsonObject user_json = new JsonObject();
-
-        user_json.addProperty("favourites_count", user.getFavouritesCount());
-        user_json.addProperty("followers_count", user.getFollowersCount());
-        user_json.addProperty("default_profile_image", user.isDefaultProfileImage());
-        user_json.addProperty("description", user.getDescription());
-        user_json.addProperty("url", user.getURL());
-        user_json.addProperty("profile_background_color", user.getProfileBackgroundColor());
-        user_json.addProperty("statuses_count", user.getStatusesCount());
-        user_json.addProperty("follow_request_sent", user.isFollowRequestSent());
-        user_json.addProperty("created_at", getFormattedDate(user.getCreatedAt()));
-        user_json.addProperty("profile_image_url_https", user.getProfileImageURLHttps());
-        user_json.addProperty("friends_count", user.getFriendsCount());
-        user_json.addProperty("profile_image_url", user.getProfileImageURL());
-        user_json.addProperty("profile_background_image_url_https", user.getProfileBackgroundImageUrlHttps());
-        user_json.addProperty("profile_sidebar_fill_color", user.getProfileSidebarFillColor());
-        user_json.addProperty("verified", user.isVerified());
-        user_json.addProperty("contributors_enabled", user.isContributorsEnabled());
-        user_json.addProperty("is_translator", user.isTranslator());
-        user_json.addProperty("default_profile", user.isDefaultProfile());
-        user_json.addProperty("lang", user.getLang());
-        user_json.addProperty("protected", user.isProtected());
-        user_json.addProperty("location", user.getLocation());
-        user_json.addProperty("profile_text_color", user.getProfileTextColor());
-        user_json.addProperty("profile_banner_url", user.getProfileBannerURL());
-        user_json.addProperty("screen_name", user.getScreenName());
-        user_json.addProperty("id_str", Long.toString(user.getId()));
-        user_json.addProperty("name", user.getName());
-        user_json.addProperty("profile_background_tile", user.isProfileBackgroundTiled());
-        user_json.addProperty("profile_sidebar_border_color", user.getProfileSidebarBorderColor());
-        user_json.addProperty("utc_offset", user.getUtcOffset());
-        user_json.addProperty("id", user.getId());
-        user_json.addProperty("profile_link_color", user.getProfileLinkColor());
-        user_json.addProperty("profile_background_image_url", user.getProfileBackgroundImageURL());
-        user_json.addProperty("listed_count", user.getListedCount());
-        user_json.addProperty("geo_enabled", user.isGeoEnabled());
-        user_json.addProperty("profile_use_background_image", user.isProfileUseBackgroundImage());
-        user_json.addProperty("time_zone", user.getTimeZone());
-
-        JsonObject entities = new JsonObject();
-
-        JsonObject description_object = new JsonObject();
-        description_object.add("urls", new JsonArray());
-        entities.add("description", description_object);
-
-        JsonArray urls_array = new JsonArray();
-        JsonObject temp_entity = new JsonObject();
-        JsonArray temp_array = new JsonArray();
-        temp_entity.addProperty("url", user.getURLEntity().getURL());
-        temp_entity.addProperty("expanded_url", user.getURLEntity().getExpandedURL());
-        temp_entity.addProperty("display_url", user.getURLEntity().getDisplayURL());
-        temp_array.add(user.getURLEntity().getStart());
-        temp_array.add(user.getURLEntity().getEnd());
-        temp_entity.add("indices", temp_array);
-        urls_array.add(temp_entity);
-
-        JsonObject url_object = new JsonObject();
-        url_object.add("urls", urls_array);
-        entities.add("url", url_object);
-
-        user_json.add("entities", entities);
-
-        // Couldn't find a direct mapping from Twitter4J to the Botometer API
-        //   for the following fields. Service still appears to work without them.
-        //user_json.addProperty("notifications", user.);
-        //user_json.addProperty("following", user.);
-        //user_json.addProperty("has_extended_profile", user.);
-        //user_json.addProperty("is_translation_enabled", user.);
-        //user_json.addProperty("translator_type", user.);
-
-        togo = user_json;
-
-        logger.debug(method + "ENDING.");
+        logger.debug("{}ENDING.", method);
         return togo;
     }
 
+    private boolean isPayloadDumpSampled() {
+        return this.payload_dump_rate >= 1.0
+            || (this.payload_dump_rate > 0.0 && ThreadLocalRandom.current().nextDouble() < this.payload_dump_rate);
+    }
+
    /**
-    * Takes a java.util.Date and returns a String in the format
-    * that is expected by the Botometer service. E.g. "Mon Sep 06 13:31:27 +0000 2010".
+    * Third pipeline stage. POSTs the payload to Botometer. Network errors
+    * and 5xx replies are retried under the RetryPolicy, and all of them
+    * count against the CircuitBreaker; while it is open the payload isn't
+    * sent at all. Only a 2xx reply is returned, so error bodies never
+    * reach the ScoreCache.
     *
-    * @param date object.
-    * @return String
+    * @param account_data user, timeline and mentions the payload was built from.
+    * @param payload request body built by getPayload.
+    * @return reply per the documentation https://market.mashape.com/OSoMe/botometer
+    * @throws BotometerException if Botometer didn't score the account, with the reason.
     */
-    private String getFormattedDate(Date date) {
-        String togo = "";
+    BotometerResult postPayload(AccountData account_data, HttpEntity payload) throws BotometerException {
+        BotometerResult togo = null;
+        String method = "postPayload: ";
+        logger.debug("{}STARTING.", method);
+
+        String screen_name = account_data.getScreenName();
+
+        // 3. Create/Execute Mashape Request on the pooled client
+        // https://market.mashape.com/OSoMe/botometer
+        HttpPost post = new HttpPost(this.botometer_url);
+            post.setHeader("X-Mashape-Key", this.mashape_key);
+            post.setHeader("Accept", "application/json");
+            post.setEntity(payload);
+
+        int failures = 0;
+        int rate_limited = 0;
+
+        while (togo == null) {
+            // A cancelled asynchronous lookup stops here rather than sending.
+            if (Thread.currentThread().isInterrupted())
+                throw new BotometerException(BotometerException.Reason.INTERRUPTED, screen_name, -1, "interrupted before sending.", null);
+
+            if (this.circuit_breaker != null && !this.circuit_breaker.allowRequest())
+                throw new BotometerException(BotometerException.Reason.CIRCUIT_OPEN, screen_name, -1,
+                    "Botometer is failing, requests held until " + this.circuit_breaker.getOpenUntil() + ".", null);
+
+            if (this.rate_limiter != null) {
+                try {
+                    this.rate_limiter.acquire(RateLimitScheduler.BOTOMETER);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new BotometerException(BotometerException.Reason.INTERRUPTED, screen_name, -1, "interrupted waiting for rate limit.", ie);
+                }
+            }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy");
-        sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+            this.metrics.inFlight(this.in_flight.incrementAndGet());
+            long started = System.nanoTime();
+
+            BotometerException failure = null;
+
+            try (CloseableHttpResponse response = this.http_client.execute(post)) {
+                int status = response.getStatusLine().getStatusCode();
+                logger.debug("Mashape Response Status: {}", status);
+
+                if (status < 200 || status >= 300)
+                    this.metrics.error(RateLimitScheduler.BOTOMETER, status);
+
+                if (this.rate_limiter != null)
+                    updateBotometerQuota(response);
+
+                // Any answer short of a 5xx means the endpoint is up.
+                if (this.circuit_breaker != null) {
+                    if (status >= 500)
+                        this.circuit_breaker.recordFailure();
+                    else
+                        this.circuit_breaker.recordSuccess();
+                }
+
+                if (status == 429 && this.rate_limiter != null && ++rate_limited <= RateLimitScheduler.MAX_RATE_LIMITED_RETRIES) {
+                    // Over quota: hold the endpoint and send the same payload again.
+                    EntityUtils.consume(response.getEntity());
+                    this.rate_limiter.exhausted(RateLimitScheduler.BOTOMETER, System.currentTimeMillis() + getRetryAfterMs(response));
+                    continue;
+                }
+
+                // Reading the entity to the end hands the connection back to the pool.
+                // The bytes are kept as they are; the scores are decoded only if asked for.
+                BotometerResult reply = new BotometerResult(response.getEntity() == null ? null : EntityUtils.toByteArray(response.getEntity()));
+                logger.trace("Mashape Response Body:   {}", reply);
+
+                if (status >= 200 && status < 300) {
+                    togo = reply;
+                    record(account_data, togo);
+                } else if (status >= 500) {
+                    failure = new BotometerException(BotometerException.Reason.BOTOMETER_UNAVAILABLE, screen_name, status, describe(status, reply), null);
+                } else {
+                    BotometerException.Reason reason = (status == 401 || status == 403) ? BotometerException.Reason.AUTHENTICATION
+                        : (status == 429) ? BotometerException.Reason.RATE_LIMITED
+                        : BotometerException.Reason.BOTOMETER_ERROR;
+                    throw new BotometerException(reason, screen_name, status, describe(status, reply), null);
+                }
+            } catch (IOException io) {
+                this.metrics.error(RateLimitScheduler.BOTOMETER, -1);
+
+                if (this.rate_limiter != null)
+                    this.rate_limiter.unreported(RateLimitScheduler.BOTOMETER);
+
+                if (Thread.currentThread().isInterrupted())
+                    throw new BotometerException(BotometerException.Reason.INTERRUPTED, screen_name, -1, io.toString(), io);
+
+                if (this.circuit_breaker != null)
+                    this.circuit_breaker.recordFailure();
+
+                failure = new BotometerException(BotometerException.Reason.BOTOMETER_UNAVAILABLE, screen_name, -1, io.toString(), io);
+            } finally {
+                this.metrics.latency(RateLimitScheduler.BOTOMETER, System.nanoTime() - started);
+                this.metrics.inFlight(this.in_flight.decrementAndGet());
+            }
+
+            if (failure != null) {
+                if (!this.retry_policy.canRetry(++failures))
+                    throw failure;
 
-        togo = sdf.format(date);
+                logger.warn("{}{}, retry {} of {}.", method, failure.getMessage(), failures, this.retry_policy.getMaxAttempts() - 1);
+
+                try {
+                    this.retry_policy.backoff(failures);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new BotometerException(BotometerException.Reason.INTERRUPTED, screen_name, -1, "interrupted backing off.", ie);
+                }
+            }
+        }
 
+        logger.debug("{}ENDING.", method);
         return togo;
     }
-}
 
+   /**
+    * Saves a successful reply to the replay archive. A failure to record
+    * is logged and doesn't fail the lookup.
+    */
+    private void record(AccountData account_data, BotometerResult reply) {
+        if (this.record_to == null)
+            return;
+
+        try {
+            this.record_to.putBotometerReply(account_data.getUser().getId(), reply.getJson());
+        } catch (IOException io) {
+            logger.error("record: failed recording {}, {}", account_data.getScreenName(), io.toString());
+        }
+    }
 
+    private static String describe(int status, BotometerResult reply) {
+        String error = reply.getError();
+        return "HTTP " + status + ", " + ((error != null) ? error : StringUtils.abbreviate(reply.getJson(), 200));
+    }
 
+   /**
+    * Records the quota Mashape reports in the response headers, when it
+    * reports a limit, the requests remaining and the seconds until reset.
+    */
+    private void updateBotometerQuota(HttpResponse response) {
+        Header limit     = response.getFirstHeader("X-RateLimit-requests-Limit");
+        Header remaining = response.getFirstHeader("X-RateLimit-requests-Remaining");
+        Header reset     = response.getFirstHeader("X-RateLimit-requests-Reset");
+
+        if (limit == null || remaining == null || reset == null) {
+            this.rate_limiter.unreported(RateLimitScheduler.BOTOMETER);
+            return;
+        }
 
+        try {
+            this.rate_limiter.update(RateLimitScheduler.BOTOMETER,
+                Integer.parseInt(limit.getValue().trim()),
+                Integer.parseInt(remaining.getValue().trim()),
+                System.currentTimeMillis() + Long.parseLong(reset.getValue().trim()) * 1000L);
+        } catch (NumberFormatException nfe) {
+            logger.debug("updateBotometerQuota: unreadable rate limit headers, {}", nfe.toString());
+            this.rate_limiter.unreported(RateLimitScheduler.BOTOMETER);
+        }
+    }
+
+    private static long getRetryAfterMs(HttpResponse response) {
+        Header retry_after = response.getFirstHeader("Retry-After");
 
+        if (retry_after != null) {
+            try {
+                return Long.parseLong(retry_after.getValue().trim()) * 1000L;
+            } catch (NumberFormatException nfe) {
+                // Fall through to the default.
+            }
+        }
 
+        return RateLimitScheduler.DEFAULT_RETRY_AFTER_MS;
+    }
+}
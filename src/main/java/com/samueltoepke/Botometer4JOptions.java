@@ -0,0 +1,469 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+* Botometer4JOptions class. Tuning knobs for a long-lived Botometer4J
+* client. Every setter returns the options object so they can be chained,
+* and anything left unset keeps its default.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class Botometer4JOptions {
+
+    public static final int DEFAULT_MAX_CONNECTIONS       = 20;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS    = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MS     = 60000;
+    public static final int DEFAULT_POOL_WAIT_TIMEOUT_MS  = 30000;
+    public static final int DEFAULT_INCREMENTAL_ACCOUNTS  = 10000;
+    public static final int DEFAULT_MAX_QUEUED_LOOKUPS    = 1000;
+
+    private int max_connections      = DEFAULT_MAX_CONNECTIONS;
+    private int connect_timeout_ms   = DEFAULT_CONNECT_TIMEOUT_MS;
+    private int socket_timeout_ms    = DEFAULT_SOCKET_TIMEOUT_MS;
+    private int pool_wait_timeout_ms = DEFAULT_POOL_WAIT_TIMEOUT_MS;
+
+    private boolean         parallel_fetch = false;
+    private ExecutorService fetch_executor = null;
+
+    private ExecutorService lookup_executor    = null;
+    private int             max_queued_lookups = DEFAULT_MAX_QUEUED_LOOKUPS;
+
+    private ScoreCache score_cache = null;
+
+    private boolean incremental_refresh          = false;
+    private int     incremental_refresh_accounts = DEFAULT_INCREMENTAL_ACCOUNTS;
+
+    private RateLimitScheduler rate_limit_scheduler = new RateLimitScheduler();
+
+    private String        botometer_url  = Botometer4J.BOTOMETER_URL;
+    private TwitterSource twitter_source = null;
+    private ReplayArchive record_to      = null;
+
+    private BotometerMetrics metrics = BotometerMetrics.NONE;
+
+    private double payload_dump_rate = 0.0;
+
+    private boolean gzip_payload         = false;
+    private boolean omit_constant_fields = false;
+
+    private PayloadProfile payload_profile   = PayloadProfile.FULL;
+    private PayloadProfile quick_profile     = null;
+    private double         quick_clear_below = 0.0;
+    private double         quick_flag_above  = 1.0;
+
+    private RetryPolicy    retry_policy    = new RetryPolicy();
+    private CircuitBreaker circuit_breaker = new CircuitBreaker();
+
+   /**
+    * @param max_connections size of the keep-alive connection pool to Botometer.
+    * @return this options object.
+    */
+    public Botometer4JOptions setMaxConnections(int max_connections) {
+        if (max_connections < 1)
+            throw new IllegalArgumentException("max_connections must be positive.");
+        this.max_connections = max_connections;
+        return this;
+    }
+
+   /**
+    * @param connect_timeout_ms time allowed to open a connection, for Twitter and Botometer.
+    * @return this options object.
+    */
+    public Botometer4JOptions setConnectTimeoutMs(int connect_timeout_ms) {
+        this.connect_timeout_ms = connect_timeout_ms;
+        return this;
+    }
+
+   /**
+    * @param socket_timeout_ms time allowed between bytes read, for Twitter and Botometer.
+    * @return this options object.
+    */
+    public Botometer4JOptions setSocketTimeoutMs(int socket_timeout_ms) {
+        this.socket_timeout_ms = socket_timeout_ms;
+        return this;
+    }
+
+   /**
+    * @param pool_wait_timeout_ms time allowed to wait for a free pooled connection.
+    * @return this options object.
+    */
+    public Botometer4JOptions setPoolWaitTimeoutMs(int pool_wait_timeout_ms) {
+        this.pool_wait_timeout_ms = pool_wait_timeout_ms;
+        return this;
+    }
+
+   /**
+    * When enabled, the user, timeline and mentions requests for one account
+    * are sent at the same time on threads owned by the client, so a lookup
+    * takes roughly as long as the slowest of the three. Each timeline page
+    * after the first still waits for the one before it.
+    *
+    * @param parallel_fetch true to fetch concurrently.
+    * @return this options object.
+    */
+    public Botometer4JOptions setParallelFetch(boolean parallel_fetch) {
+        this.parallel_fetch = parallel_fetch;
+        return this;
+    }
+
+   /**
+    * Runs the concurrent user, timeline and mentions requests on the
+    * caller's executor instead of threads owned by the client. Implies
+    * parallel fetching. The client never shuts this executor down.
+    *
+    * @param fetch_executor executor for the Twitter requests.
+    * @return this options object.
+    */
+    public Botometer4JOptions setFetchExecutor(ExecutorService fetch_executor) {
+        this.fetch_executor = fetch_executor;
+        return this;
+    }
+
+   /**
+    * Runs the getBotometer*Async lookups on the caller's executor. By
+    * default the client runs them on its own pool of getMaxConnections()
+    * threads, since that is how many POSTs can be in flight at once. The
+    * client never shuts this executor down.
+    *
+    * @param lookup_executor executor for asynchronous lookups, or null for the client's own.
+    * @return this options object.
+    */
+    public Botometer4JOptions setLookupExecutor(ExecutorService lookup_executor) {
+        this.lookup_executor = lookup_executor;
+        return this;
+    }
+
+   /**
+    * Bounds the queue of the client's own lookup pool. A getBotometer*Async
+    * call made while that many lookups are already waiting for a thread
+    * returns a future failed with a RejectedExecutionException, rather
+    * than holding the caller's work in memory without limit. Not used with
+    * setLookupExecutor, where the caller's executor decides.
+    *
+    * @param max_queued_lookups most lookups waiting for a thread.
+    * @return this options object.
+    */
+    public Botometer4JOptions setMaxQueuedLookups(int max_queued_lookups) {
+        if (max_queued_lookups < 1)
+            throw new IllegalArgumentException("max_queued_lookups must be positive.");
+        this.max_queued_lookups = max_queued_lookups;
+        return this;
+    }
+
+   /**
+    * Caches Botometer responses by user id and screen name, so repeat
+    * lookups skip Twitter and Botometer. See MemoryScoreCache,
+    * DiskScoreCache and TieredScoreCache. The caller keeps ownership and
+    * closes the cache.
+    *
+    * @param score_cache cache to use, or null for none.
+    * @return this options object.
+    */
+    public Botometer4JOptions setScoreCache(ScoreCache score_cache) {
+        this.score_cache = score_cache;
+        return this;
+    }
+
+   /**
+    * When enabled, the client keeps the last timeline and mentions fetched
+    * for each account in memory. Scoring that account again only asks
+    * Twitter for statuses newer than the stored since_id and merges them
+    * into the window. Statuses deleted since the earlier fetch stay in the
+    * window until newer ones push them out. Windows are kept per account at
+    * the largest PayloadProfile limit seen: a quick-screen lookup reuses a
+    * full window, and a full lookup after a quick one fetches in full once.
+    *
+    * @param incremental_refresh true to refresh incrementally.
+    * @return this options object.
+    */
+    public Botometer4JOptions setIncrementalRefresh(boolean incremental_refresh) {
+        this.incremental_refresh = incremental_refresh;
+        return this;
+    }
+
+   /**
+    * @param incremental_refresh_accounts number of accounts whose windows are kept, least recently used dropped first.
+    * @return this options object.
+    */
+    public Botometer4JOptions setIncrementalRefreshAccounts(int incremental_refresh_accounts) {
+        if (incremental_refresh_accounts < 1)
+            throw new IllegalArgumentException("incremental_refresh_accounts must be positive.");
+        this.incremental_refresh_accounts = incremental_refresh_accounts;
+        return this;
+    }
+
+   /**
+    * Paces Twitter and Botometer requests to stay under each endpoint's
+    * rate limit, and waits out a rate-limit refusal instead of failing the
+    * lookup. Each options object starts with its own scheduler, so clients
+    * built from the same options share it; pass null to turn pacing off.
+    *
+    * @param rate_limit_scheduler scheduler to use, or null for none.
+    * @return this options object.
+    */
+    public Botometer4JOptions setRateLimitScheduler(RateLimitScheduler rate_limit_scheduler) {
+        this.rate_limit_scheduler = rate_limit_scheduler;
+        return this;
+    }
+
+   /**
+    * @param botometer_url check_account endpoint to POST to, e.g. a BotometerReplayServer.
+    * @return this options object.
+    */
+    public Botometer4JOptions setBotometerUrl(String botometer_url) {
+        if (botometer_url == null || botometer_url.isEmpty())
+            throw new IllegalArgumentException("botometer_url must be populated.");
+        this.botometer_url = botometer_url;
+        return this;
+    }
+
+   /**
+    * Serves the Twitter calls from this source instead of the live API,
+    * e.g. a ReplayTwitterSource for offline load tests. The credentials
+    * are then only used to keep rate limits apart.
+    *
+    * @param twitter_source source for every credential set, or null for the live API.
+    * @return this options object.
+    */
+    public Botometer4JOptions setTwitterSource(TwitterSource twitter_source) {
+        this.twitter_source = twitter_source;
+        return this;
+    }
+
+   /**
+    * Saves every Twitter response and every successful Botometer reply to
+    * the archive, for later replay with ReplayTwitterSource and
+    * BotometerReplayServer.
+    *
+    * @param record_to archive to record into, or null to not record.
+    * @return this options object.
+    */
+    public Botometer4JOptions setRecordTo(ReplayArchive record_to) {
+        this.record_to = record_to;
+        return this;
+    }
+
+   /**
+    * @param metrics listener for request latencies, errors and payload sizes, or null for none.
+    * @return this options object.
+    */
+    public Botometer4JOptions setMetrics(BotometerMetrics metrics) {
+        this.metrics = (metrics == null) ? BotometerMetrics.NONE : metrics;
+        return this;
+    }
+
+   /**
+    * Writes the full JSON payload of a share of lookups to the log at
+    * TRACE level. Off by default; payloads are never serialized for the
+    * log otherwise, whatever the log level.
+    *
+    * @param payload_dump_rate share of payloads to log, 0.0 to 1.0.
+    * @return this options object.
+    */
+    public Botometer4JOptions setPayloadDumpRate(double payload_dump_rate) {
+        if (payload_dump_rate < 0.0 || payload_dump_rate > 1.0)
+            throw new IllegalArgumentException("payload_dump_rate must be between 0.0 and 1.0.");
+        this.payload_dump_rate = payload_dump_rate;
+        return this;
+    }
+
+   /**
+    * Compresses the payload with gzip as it is streamed to Botometer, and
+    * sends it with Content-Encoding: gzip. A full account's payload
+    * shrinks several times over, since every status repeats its user.
+    * Off by default; the endpoint must accept gzipped request bodies.
+    *
+    * @param gzip_payload true to gzip the request body.
+    * @return this options object.
+    */
+    public Botometer4JOptions setGzipPayload(boolean gzip_payload) {
+        this.gzip_payload = gzip_payload;
+        return this;
+    }
+
+   /**
+    * Leaves out the status fields that are always sent with the same
+    * value: contributors, coordinates, geo and place (null) and symbols
+    * (empty). Off by default, as Botometer's sample payload carries them;
+    * only turn it on for an endpoint known to do without them.
+    *
+    * @param omit_constant_fields true to leave the constant fields out.
+    * @return this options object.
+    */
+    public Botometer4JOptions setOmitConstantFields(boolean omit_constant_fields) {
+        this.omit_constant_fields = omit_constant_fields;
+        return this;
+    }
+
+   /**
+    * @param payload_profile how many statuses and mentions, and which fields,
+    * go into each payload, or null for PayloadProfile.FULL.
+    * @return this options object.
+    */
+    public Botometer4JOptions setPayloadProfile(PayloadProfile payload_profile) {
+        this.payload_profile = (payload_profile == null) ? PayloadProfile.FULL : payload_profile;
+        return this;
+    }
+
+   /**
+    * Scores every account in two tiers. Each account is first scored from
+    * a payload built with quick_profile. A quick score below clear_below or
+    * above flag_above is kept as the answer; anything in between, or a
+    * reply without a score, is scored again with the payload profile. The
+    * score compared is the universal one, or the English one if the reply
+    * has no universal score. Fetch and scoring effort is only spent in full
+    * where it can change the decision.
+    *
+    * @param quick_profile payload for the first tier, or null to score every account once in full.
+    * @param clear_below quick scores under this are final, 0.0 to 1.0.
+    * @param flag_above quick scores over this are final, clear_below to 1.0.
+    * @return this options object.
+    */
+    public Botometer4JOptions setQuickScreen(PayloadProfile quick_profile, double clear_below, double flag_above) {
+        if (clear_below < 0.0 || flag_above > 1.0 || clear_below > flag_above)
+            throw new IllegalArgumentException("quick screen thresholds must satisfy 0.0 <= clear_below <= flag_above <= 1.0.");
+        this.quick_profile     = quick_profile;
+        this.quick_clear_below = clear_below;
+        this.quick_flag_above  = flag_above;
+        return this;
+    }
+
+   /**
+    * @param retry_policy how Twitter and Botometer requests that failed with a
+    * network error or a 5xx are retried, or null to not retry.
+    * @return this options object.
+    */
+    public Botometer4JOptions setRetryPolicy(RetryPolicy retry_policy) {
+        this.retry_policy = (retry_policy == null) ? RetryPolicy.NONE : retry_policy;
+        return this;
+    }
+
+   /**
+    * Stops POSTing to Botometer while it keeps failing. Clients built
+    * from the same options share it; pass null to always send.
+    *
+    * @param circuit_breaker breaker for the Botometer endpoint, or null for none.
+    * @return this options object.
+    */
+    public Botometer4JOptions setCircuitBreaker(CircuitBreaker circuit_breaker) {
+        this.circuit_breaker = circuit_breaker;
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return this.max_connections;
+    }
+
+    public int getConnectTimeoutMs() {
+        return this.connect_timeout_ms;
+    }
+
+    public int getSocketTimeoutMs() {
+        return this.socket_timeout_ms;
+    }
+
+    public int getPoolWaitTimeoutMs() {
+        return this.pool_wait_timeout_ms;
+    }
+
+    public boolean isParallelFetch() {
+        return this.parallel_fetch || this.fetch_executor != null;
+    }
+
+    public ExecutorService getFetchExecutor() {
+        return this.fetch_executor;
+    }
+
+    public ExecutorService getLookupExecutor() {
+        return this.lookup_executor;
+    }
+
+    public int getMaxQueuedLookups() {
+        return this.max_queued_lookups;
+    }
+
+    public ScoreCache getScoreCache() {
+        return this.score_cache;
+    }
+
+    public boolean isIncrementalRefresh() {
+        return this.incremental_refresh;
+    }
+
+    public int getIncrementalRefreshAccounts() {
+        return this.incremental_refresh_accounts;
+    }
+
+    public RateLimitScheduler getRateLimitScheduler() {
+        return this.rate_limit_scheduler;
+    }
+
+    public String getBotometerUrl() {
+        return this.botometer_url;
+    }
+
+    public TwitterSource getTwitterSource() {
+        return this.twitter_source;
+    }
+
+    public ReplayArchive getRecordTo() {
+        return this.record_to;
+    }
+
+    public BotometerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public double getPayloadDumpRate() {
+        return this.payload_dump_rate;
+    }
+
+    public boolean isGzipPayload() {
+        return this.gzip_payload;
+    }
+
+    public boolean isOmitConstantFields() {
+        return this.omit_constant_fields;
+    }
+
+    public PayloadProfile getPayloadProfile() {
+        return this.payload_profile;
+    }
+
+    public PayloadProfile getQuickProfile() {
+        return this.quick_profile;
+    }
+
+    public double getQuickClearBelow() {
+        return this.quick_clear_below;
+    }
+
+    public double getQuickFlagAbove() {
+        return this.quick_flag_above;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return this.retry_policy;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuit_breaker;
+    }
+}
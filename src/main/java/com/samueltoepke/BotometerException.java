@@ -0,0 +1,164 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import twitter4j.TwitterException;
+import twitter4j.User;
+
+/**
+* BotometerException class. Why a single lookup failed. Each account in
+* a batch fails on its own with one of these, so a protected, missing or
+* suspended account, or an outage that outlasted the retries, costs that
+* account and nothing else.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class BotometerException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        /** The screen name was empty or malformed. */
+        INVALID_INPUT(false),
+        /** Twitter has no such account. */
+        NOT_FOUND(false),
+        /** The account is suspended. */
+        SUSPENDED(false),
+        /** The account's tweets are protected, so there's nothing to score. */
+        PROTECTED(false),
+        /** Twitter or Mashape rejected the credentials. */
+        AUTHENTICATION(false),
+        /** A rate limit was hit that couldn't be waited out. */
+        RATE_LIMITED(true),
+        /** Twitter failed with a 5xx or a network error, after retries. */
+        TWITTER_UNAVAILABLE(true),
+        /** Any other Twitter failure. */
+        TWITTER_ERROR(false),
+        /** Botometer failed with a 5xx or a network error, after retries. */
+        BOTOMETER_UNAVAILABLE(true),
+        /** Botometer answered with a non-2xx status that retrying won't fix. */
+        BOTOMETER_ERROR(false),
+        /** Botometer has been failing, so the CircuitBreaker didn't send the request. */
+        CIRCUIT_OPEN(true),
+        /** The lookup was cancelled or its thread interrupted. */
+        INTERRUPTED(false);
+
+        private final boolean transient_failure;
+
+        Reason(boolean transient_failure) {
+            this.transient_failure = transient_failure;
+        }
+
+       /**
+        * @return true if the same lookup may succeed when tried again later.
+        */
+        public boolean isTransient() {
+            return this.transient_failure;
+        }
+    }
+
+    private final Reason reason;
+    private final String screen_name;
+    private final int    status_code;
+
+   /**
+    * @param reason why the lookup failed.
+    * @param screen_name account being scored.
+    * @param status_code HTTP status behind the failure, or -1 if none.
+    * @param message description of the failure.
+    * @param cause underlying exception, or null.
+    */
+    public BotometerException(Reason reason, String screen_name, int status_code, String message, Throwable cause) {
+        super(reason + " " + screen_name + ": " + message, cause);
+
+        this.reason      = reason;
+        this.screen_name = screen_name;
+        this.status_code = status_code;
+    }
+
+    public Reason getReason() {
+        return this.reason;
+    }
+
+    public String getScreenName() {
+        return this.screen_name;
+    }
+
+    public int getStatusCode() {
+        return this.status_code;
+    }
+
+    public boolean isTransient() {
+        return this.reason.isTransient();
+    }
+
+   /**
+    * Classifies a Twitter4J failure.
+    * Error codes: https://developer.twitter.com/en/docs/basics/response-codes
+    *
+    * @param te exception from a Twitter request.
+    * @param screen_name account being scored.
+    * @return the equivalent BotometerException.
+    */
+    static BotometerException fromTwitter(TwitterException te, String screen_name) {
+        Reason reason;
+
+        if (te.getCause() instanceof InterruptedException)
+            reason = Reason.INTERRUPTED;
+        else if (te.exceededRateLimitation())
+            reason = Reason.RATE_LIMITED;
+        else if (te.getErrorCode() == 63)
+            reason = Reason.SUSPENDED;
+        else if (te.getErrorCode() == 179)
+            reason = Reason.PROTECTED; // Not authorized to see this status.
+        else if (te.getStatusCode() == 401 || te.getErrorCode() == 32 || te.getErrorCode() == 89 || te.getErrorCode() == 215)
+            reason = Reason.AUTHENTICATION;
+        else if (te.getStatusCode() == 404 || te.getErrorCode() == 34 || te.getErrorCode() == 50)
+            reason = Reason.NOT_FOUND;
+        else if (isTransient(te))
+            reason = Reason.TWITTER_UNAVAILABLE;
+        else
+            reason = Reason.TWITTER_ERROR;
+
+        return new BotometerException(reason, screen_name, te.getStatusCode(), te.getMessage(), te);
+    }
+
+   /**
+    * Classifies a failed timeline or mentions request. Twitter answers 401
+    * for the tweets of a protected account, so that case is PROTECTED;
+    * anything else is classified as by fromTwitter(TwitterException, String).
+    *
+    * @param te exception from a timeline or mentions request.
+    * @param screen_name account being scored.
+    * @param user the account, or null if it wasn't resolved.
+    * @return the equivalent BotometerException.
+    */
+    static BotometerException fromTwitter(TwitterException te, String screen_name, User user) {
+        if (te.getStatusCode() == 401 && user != null && user.isProtected())
+            return new BotometerException(Reason.PROTECTED, screen_name, te.getStatusCode(), te.getMessage(), te);
+
+        return fromTwitter(te, screen_name);
+    }
+
+   /**
+    * @param te exception from a Twitter request.
+    * @return true for network errors and 5xx responses, which are worth retrying.
+    */
+    static boolean isTransient(TwitterException te) {
+        return te.isCausedByNetworkIssue() || te.getStatusCode() >= 500;
+    }
+}
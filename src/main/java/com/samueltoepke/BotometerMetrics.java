@@ -0,0 +1,80 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+/**
+* BotometerMetrics interface. Receives timings and counts from the hot
+* path of every lookup, to be forwarded to whatever metrics registry is
+* in use, e.g. Micrometer timers, counters and gauges. Every method has an
+* empty default, so implementations only override what they publish.
+* Methods are called from fetch, pipeline and HTTP threads concurrently,
+* so implementations must be thread-safe and should not block.
+*
+* Stages are the RateLimitScheduler endpoint names, one call per request
+* (so one per timeline page), plus PAYLOAD_BUILD.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public interface BotometerMetrics {
+
+    // Serializing the payload onto the request body. The payload is
+    // streamed, so this overlaps the upload part of the Botometer POST.
+    String PAYLOAD_BUILD = "payload/build";
+
+    BotometerMetrics NONE = new BotometerMetrics() {
+    };
+
+   /**
+    * @param stage endpoint or PAYLOAD_BUILD.
+    * @param duration_ns wall time of one request or one payload write, failed or not.
+    */
+    default void latency(String stage, long duration_ns) {
+    }
+
+   /**
+    * @param endpoint endpoint the request was sent to.
+    * @param status_code HTTP status of the failure, or -1 if no response came back.
+    */
+    default void error(String endpoint, int status_code) {
+    }
+
+   /**
+    * @param requests Twitter and Botometer requests currently awaiting a response.
+    */
+    default void inFlight(int requests) {
+    }
+
+   /**
+    * @param bytes size of one payload as sent to Botometer: the UTF-8 JSON, or
+    * the compressed body when Botometer4JOptions.setGzipPayload is on.
+    */
+    default void payloadBytes(long bytes) {
+    }
+
+   /**
+    * @param endpoint USER_TIMELINE or SEARCH_TWEETS.
+    * @param statuses statuses Twitter returned for one lookup.
+    */
+    default void statusesFetched(String endpoint, int statuses) {
+    }
+
+   /**
+    * @param statuses statuses that made it into one payload.
+    */
+    default void statusesUsed(int statuses) {
+    }
+}
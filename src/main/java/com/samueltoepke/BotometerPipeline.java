@@ -0,0 +1,498 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import twitter4j.User;
+
+/**
+* BotometerPipeline class. Scores many screen names by running them through
+* four stages: user resolution, Twitter fetch, payload build and Botometer
+* POST. The first stage resolves queued screen names up to 100 at a time
+* with users/lookup, and drops protected, suspended and missing accounts
+* before any timeline or Botometer quota is spent on them. Each stage
+* has its own worker threads and a bounded queue in front of it, so a slow
+* network call for one account overlaps with work on other accounts, and a
+* full queue pushes back on the stage (or caller) feeding it. An account
+* that can't be scored fails only its own future, with a BotometerException.
+* With a quick screen set (Botometer4JOptions.setQuickScreen), an account
+* whose quick score is inconclusive goes back through the fetch stage
+* with the full payload profile and is scored again.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class BotometerPipeline implements Closeable {
+
+    private final static Logger logger = LoggerFactory.getLogger(BotometerPipeline.class);
+
+    public static final int DEFAULT_FETCH_THREADS  = 4;
+    public static final int DEFAULT_BUILD_THREADS  = 2;
+    public static final int DEFAULT_POST_THREADS   = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final long REENTRY_POLL_MS = 100;
+
+    private static final Job POISON = new Job(null, null);
+    private static final Job WAKE   = new Job(null, null);
+
+    private final Botometer4J botometer;
+    private final Stage       resolve_stage;
+    private final Stage       fetch_stage;
+    private final Stage       build_stage;
+    private final Stage       post_stage;
+    private final AtomicInteger feeders  = new AtomicInteger();
+    private final AtomicBoolean drained  = new AtomicBoolean(false);
+    private volatile boolean    closed   = false;
+
+    /**
+    * Constructor for the BotometerPipeline object, using the default
+    * per-stage concurrency.
+    *
+    * @param botometer client used by every stage.
+    * @return instantiated BotometerPipeline object.
+    */
+    public BotometerPipeline(Botometer4J botometer) {
+        this(botometer, DEFAULT_FETCH_THREADS, DEFAULT_BUILD_THREADS, DEFAULT_POST_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+    * Constructor for the BotometerPipeline object.
+    *
+    * @param botometer client used by every stage.
+    * @param fetch_threads number of concurrent Twitter fetches.
+    * @param build_threads number of concurrent payload builds.
+    * @param post_threads number of concurrent Botometer POSTs.
+    * @param queue_capacity size of the bounded queue in front of each stage.
+    * @return instantiated BotometerPipeline object.
+    */
+    public BotometerPipeline(Botometer4J botometer, int fetch_threads, int build_threads, int post_threads, int queue_capacity) {
+        String method = "BotometerPipeline: ";
+        logger.debug("{}STARTING.", method);
+
+        if (botometer == null || fetch_threads < 1 || build_threads < 1 || post_threads < 1 || queue_capacity < 1)
+            throw new IllegalArgumentException(method + "constructor arguments incorrect, make sure all populated and positive.");
+
+        this.botometer   = botometer;
+        this.post_stage  = new Stage("post", post_threads, queue_capacity, null, this::post);
+        this.build_stage = new Stage("build", build_threads, queue_capacity, this.post_stage, this::build);
+        this.fetch_stage = new Stage("fetch", fetch_threads, queue_capacity, this.build_stage, this::fetch);
+
+        // One resolver is enough: each call covers up to MAX_LOOKUP_USERS accounts.
+        this.resolve_stage = new Stage("resolve", 1, Math.max(queue_capacity, Botometer4J.MAX_LOOKUP_USERS),
+            Botometer4J.MAX_LOOKUP_USERS, this.fetch_stage, this::resolve);
+
+        this.post_stage.start();
+        this.build_stage.start();
+        this.fetch_stage.start();
+        this.resolve_stage.start();
+
+        logger.debug("{}ENDING.", method);
+    }
+
+   /**
+    * Queues a screen name for scoring. Blocks while the first queue is full.
+    *
+    * @param screen_name The Twitter user for which to get the data.
+    * @return future completed with the JSON String, or exceptionally on error.
+    */
+    public CompletableFuture<String> submit(String screen_name) throws InterruptedException {
+        if (this.closed)
+            throw new IllegalStateException("BotometerPipeline is closed.");
+
+        Job job = new Job(screen_name, new CompletableFuture<String>());
+        this.resolve_stage.queue.put(job);
+        return job.future;
+    }
+
+   /**
+    * Queues every screen name for scoring from a background feeder thread,
+    * so the caller gets the futures back straight away even when there are
+    * more names than the queues can hold.
+    *
+    * @param screen_names The Twitter users for which to get the data.
+    * @return Map of screen name to the future JSON String for that user.
+    */
+    public Map<String, CompletableFuture<String>> scoreAll(Collection<String> screen_names) {
+        final Map<String, CompletableFuture<String>> togo = new LinkedHashMap<>();
+        final List<Job> jobs = new ArrayList<>();
+
+        for (String screen_name : screen_names) {
+            if (togo.containsKey(screen_name))
+                continue;
+
+            Job job = new Job(screen_name, new CompletableFuture<String>());
+            togo.put(screen_name, job.future);
+            jobs.add(job);
+        }
+
+        this.feeders.incrementAndGet();
+
+        if (this.closed) {
+            if (this.feeders.decrementAndGet() == 0)
+                drain();
+            throw new IllegalStateException("BotometerPipeline is closed.");
+        }
+
+        Thread feeder = new Thread(() -> {
+            try {
+                for (Job job : jobs)
+                    this.resolve_stage.queue.put(job);
+            } catch (InterruptedException ie) {
+                for (Job job : jobs)
+                    job.future.completeExceptionally(ie);
+            } finally {
+                // A close() issued while feeding is finished off by the last feeder.
+                if (this.feeders.decrementAndGet() == 0 && this.closed)
+                    drain();
+            }
+        }, "botometer-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+
+        return togo;
+    }
+
+   /**
+    * Stops accepting new screen names. Work already queued is drained
+    * through every stage before the worker threads exit.
+    */
+    @Override
+    public void close() {
+        this.closed = true;
+
+        if (this.feeders.get() == 0)
+            drain();
+    }
+
+    // Cache hits complete the job early, and a completed job isn't passed on.
+    private void resolve(List<Job> jobs) throws Exception {
+        List<String> screen_names = new ArrayList<>();
+
+        for (Job job : jobs) {
+            String cached = this.botometer.getCachedResponse(job.screen_name);
+
+            if (cached != null)
+                job.future.complete(cached);
+            else
+                screen_names.add(job.screen_name);
+        }
+
+        if (screen_names.isEmpty())
+            return;
+
+        Map<String, User> users;
+        try {
+            users = this.botometer.lookupUsers(screen_names);
+        } catch (BotometerException be) {
+            if (be.getReason() == BotometerException.Reason.INTERRUPTED)
+                throw be;
+
+            // Fall back to one users/show per account in the fetch stage.
+            logger.warn("resolve: users/lookup failed, resolving one at a time: {}", be.getMessage());
+            return;
+        }
+
+        for (Job job : jobs) {
+            if (job.future.isDone())
+                continue;
+
+            User               user     = users.get(job.screen_name.toLowerCase(Locale.ROOT));
+            BotometerException rejected = null;
+
+            if (user == null)
+                rejected = new BotometerException(BotometerException.Reason.NOT_FOUND, job.screen_name, 404,
+                    "not returned by users/lookup, missing or suspended.", null);
+            else if (user.isProtected())
+                rejected = new BotometerException(BotometerException.Reason.PROTECTED, job.screen_name, -1,
+                    "tweets are protected.", null);
+
+            if (rejected == null) {
+                // A hit on the resolved id (e.g. after a rename) needs no timeline or mentions.
+                String cached = this.botometer.getCachedResponse(job.screen_name, user);
+
+                if (cached != null)
+                    job.future.complete(cached);
+                else
+                    job.user = user;
+            } else {
+                logger.warn("BotometerPipeline resolve stage: {}", rejected.getMessage());
+                job.future.completeExceptionally(rejected);
+            }
+        }
+    }
+
+    // A job fetched with the quick profile may come back here from the post
+    // stage, which the fetch stage waits for before it shuts down.
+    private void fetch(Job job) throws Exception {
+        if (job.profile == null) {
+            job.account_data = this.botometer.getAccountData(job.screen_name, job.user);
+
+            this.fetch_stage.returning.add(job);
+            job.future.whenComplete((response, failure) -> this.fetch_stage.returning.remove(job));
+        } else {
+            job.account_data = this.botometer.getAccountData(job.screen_name, job.user, job.profile);
+        }
+    }
+
+    private void build(Job job) throws Exception {
+        String cached = this.botometer.getCachedResponse(job.account_data);
+
+        if (cached != null)
+            job.future.complete(cached);
+        else
+            job.payload = this.botometer.getPayload(job.account_data);
+    }
+
+    // An inconclusive quick screen goes back to the fetch stage with the
+    // full profile, keeping the resolved user.
+    private void post(Job job) throws Exception {
+        BotometerResult result = this.botometer.postPayload(job.account_data, job.payload);
+
+        if (job.profile == null && this.botometer.needsFullScore(job.account_data, result)) {
+            job.user         = job.account_data.getUser();
+            job.profile      = this.botometer.getPayloadProfile();
+            job.account_data = null;
+            job.payload      = null;
+            this.fetch_stage.reenter(job);
+            return;
+        }
+
+        String response = result.getJson();
+        this.botometer.cacheResponse(job.account_data, response);
+
+        job.future.complete(response);
+    }
+
+    private void drain() {
+        if (this.drained.compareAndSet(false, true)) {
+            logger.debug("close: draining pipeline.");
+            this.resolve_stage.shutdown();
+        }
+    }
+
+    /**
+    * A unit of work moving through the pipeline. Each stage fills in the
+    * field the next stage needs.
+    */
+    private static final class Job {
+        final String                    screen_name;
+        final CompletableFuture<String> future;
+        User                            user;
+        PayloadProfile                  profile; // null for the client's first-pass profile.
+        AccountData                     account_data;
+        HttpEntity                      payload;
+
+        Job(String screen_name, CompletableFuture<String> future) {
+            this.screen_name = screen_name;
+            this.future      = future;
+        }
+    }
+
+    private interface Task {
+        void run(Job job) throws Exception;
+    }
+
+    private interface BatchTask {
+        void run(List<Job> jobs) throws Exception;
+    }
+
+    /**
+    * One stage of the pipeline: a bounded input queue and the worker
+    * threads draining it into the next stage.
+    */
+    private static final class Stage {
+        final String               name;
+        final int                  threads;
+        final BlockingQueue<Job>   queue;
+        final Stage                next;
+        final int                  batch_size;
+        final BatchTask            task;
+        final AtomicInteger        live;
+
+        // Jobs sent back by a later stage. Unbounded so that stage never
+        // blocks on this one, which would close a loop of full queues; it
+        // holds at most the jobs already in flight.
+        final BlockingQueue<Job>   reentry   = new LinkedBlockingQueue<>();
+        // Jobs past this stage that may still be sent back.
+        final Set<Job>             returning = ConcurrentHashMap.newKeySet();
+
+        Stage(String name, int threads, int queue_capacity, Stage next, Task task) {
+            this(name, threads, queue_capacity, 1, next, jobs -> task.run(jobs.get(0)));
+        }
+
+        Stage(String name, int threads, int queue_capacity, int batch_size, Stage next, BatchTask task) {
+            this.name       = name;
+            this.threads    = threads;
+            this.queue      = new ArrayBlockingQueue<>(queue_capacity);
+            this.batch_size = batch_size;
+            this.next       = next;
+            this.task       = task;
+            this.live       = new AtomicInteger(threads);
+        }
+
+        void start() {
+            for (int i = 1; i <= this.threads; i++) {
+                Thread worker = new Thread(this::work, "botometer-" + this.name + "-" + i);
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        void reenter(Job job) {
+            // Queued before it leaves returning, so a worker waiting to shut
+            // down always sees it in one or the other.
+            this.reentry.add(job);
+            this.returning.remove(job);
+
+            // Wakes a worker blocked on an empty queue; a full one has work anyway.
+            this.queue.offer(WAKE);
+        }
+
+        void shutdown() {
+            try {
+                for (int i = 0; i < this.threads; i++)
+                    this.queue.put(POISON);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void work() {
+            List<Job> batch = new ArrayList<>(this.batch_size);
+
+            for (;;) {
+                batch.clear();
+
+                Job reentered = this.reentry.poll();
+                try {
+                    batch.add((reentered != null) ? reentered : this.queue.take());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+
+                // Take whatever else is already waiting, up to the batch size.
+                if (this.batch_size > 1)
+                    this.queue.drainTo(batch, this.batch_size - 1);
+
+                int poisoned = 0;
+                for (Iterator<Job> it = batch.iterator(); it.hasNext(); ) {
+                    Job job = it.next();
+
+                    if (job == POISON) {
+                        poisoned++;
+                        it.remove();
+                    } else if (job == WAKE || job.future.isDone()) { // A wake-up, or cancelled by the caller.
+                        it.remove();
+                    }
+                }
+
+                if (!batch.isEmpty() && !process(batch))
+                    return;
+
+                if (poisoned > 0) {
+                    // Pills meant for sibling workers go back on the queue.
+                    for (int i = 1; i < poisoned; i++)
+                        this.queue.add(POISON);
+
+                    if (!awaitReturning())
+                        return;
+
+                    // Last worker out passes the shutdown on to the next stage.
+                    if (this.live.decrementAndGet() == 0 && this.next != null)
+                        this.next.shutdown();
+                    return;
+                }
+            }
+        }
+
+        // Serves jobs sent back to this stage until none can come back any
+        // more. Returns false when the worker was interrupted and should exit.
+        private boolean awaitReturning() {
+            List<Job> batch = new ArrayList<>(1);
+
+            while (!this.returning.isEmpty() || !this.reentry.isEmpty()) {
+                Job job;
+                try {
+                    job = this.reentry.poll(REENTRY_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    return false;
+                }
+
+                if (job == null || job.future.isDone())
+                    continue;
+
+                batch.clear();
+                batch.add(job);
+                if (!process(batch))
+                    return false;
+            }
+            return true;
+        }
+
+        // Returns false when the worker was interrupted and should exit.
+        private boolean process(List<Job> batch) {
+            try {
+                this.task.run(batch);
+
+                if (this.next != null) {
+                    for (Job job : batch) {
+                        if (!job.future.isDone())
+                            this.next.queue.put(job);
+                    }
+                }
+            } catch (InterruptedException ie) {
+                fail(batch, ie);
+                return false;
+            } catch (BotometerException be) {
+                logger.warn("BotometerPipeline {} stage: {}", this.name, be.getMessage());
+                fail(batch, be);
+            } catch (Exception | Error e) {
+                // An Error fails the batch too rather than killing the worker,
+                // which would strand its jobs and the shutdown count.
+                logger.error("BotometerPipeline {} stage failed for {}: {}", this.name, batch.get(0).screen_name, e.toString());
+                fail(batch, e);
+            }
+            return true;
+        }
+
+        private static void fail(List<Job> batch, Throwable t) {
+            for (Job job : batch)
+                job.future.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+* BotometerReplayServer class. A local stand-in for the Botometer
+* check_account endpoint. It answers each POST with the reply recorded in
+* a ReplayArchive for the payload's user id. It can add a fixed latency
+* and fail a share of requests with an HTTP 503. Request bodies sent with
+* Content-Encoding: gzip are decompressed. Point a client at it with
+* Botometer4JOptions.setBotometerUrl(server.getUrl()).
+*
+* Can also be run on its own:
+*   java com.samueltoepke.BotometerReplayServer archive_dir port [latency_ms] [error_rate]
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class BotometerReplayServer implements Closeable {
+
+    private final static Logger logger = LoggerFactory.getLogger(BotometerReplayServer.class);
+
+    public static final String PATH = "/2/check_account";
+
+    private final ReplayArchive   archive;
+    private final long            latency_ms;
+    private final double          error_rate;
+    private final HttpServer      server;
+    private final ExecutorService executor;
+
+    /**
+    * Constructor for the BotometerReplayServer object. The server is
+    * listening on the loopback interface when this returns.
+    *
+    * @param archive recorded Botometer replies.
+    * @param port port to listen on, or 0 for any free port.
+    * @param latency_ms delay added to every reply.
+    * @param error_rate share of requests, 0.0 to 1.0, failed with an HTTP 503.
+    * @return instantiated BotometerReplayServer object.
+    */
+    public BotometerReplayServer(ReplayArchive archive, int port, long latency_ms, double error_rate) throws IOException {
+        String method = "BotometerReplayServer: ";
+        logger.debug("{}STARTING.", method);
+
+        if (archive == null || latency_ms < 0 || error_rate < 0.0 || error_rate > 1.0)
+            throw new IllegalArgumentException(method + "constructor arguments incorrect, make sure archive populated and rates in range.");
+
+        this.archive    = archive;
+        this.latency_ms = latency_ms;
+        this.error_rate = error_rate;
+
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "botometer-replay");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+
+        logger.debug("{}listening on {}", method, getUrl());
+        logger.debug("{}ENDING.", method);
+    }
+
+   /**
+    * @return URL of the stand-in check_account endpoint.
+    */
+    public String getUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + PATH;
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "{\"error\":\"POST only.\"}");
+                return;
+            }
+
+            InputStream request = exchange.getRequestBody();
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+                request = new GZIPInputStream(request);
+
+            long user_id = readUserId(request);
+
+            if (this.latency_ms > 0)
+                Thread.sleep(this.latency_ms);
+
+            if (this.error_rate > 0.0 && ThreadLocalRandom.current().nextDouble() < this.error_rate) {
+                reply(exchange, 503, "{\"error\":\"Injected error.\"}");
+                return;
+            }
+
+            String body = (user_id < 0) ? null : this.archive.getBotometerReply(user_id);
+
+            if (body == null)
+                reply(exchange, 404, "{\"error\":\"No recorded reply for user " + user_id + ".\"}");
+            else
+                reply(exchange, 200, body);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | IOException e) {
+            logger.error("handle: {}", e.toString());
+            reply(exchange, 500, "{\"error\":\"Replay server failure.\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+   /**
+    * Reads user.id from the payload, which Botometer4J writes first, then
+    * drains the rest of the body so the connection can be reused.
+    */
+    private static long readUserId(InputStream body) throws IOException {
+        long togo = -1;
+
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        reader.beginObject();
+
+        while (togo < 0 && reader.hasNext()) {
+            if (!"user".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("id".equals(reader.nextName()))
+                    togo = Long.parseLong(reader.nextString());
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+        }
+
+        byte[] drain = new byte[8192];
+        while (body.read(drain) != -1) {
+            // Discard the timeline and mentions.
+        }
+
+        return togo;
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+   /**
+    * Main method. Runs a replay server until the process is stopped.
+    * @param args archive directory, port, optional latency in ms, optional error rate.
+    */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: BotometerReplayServer archive_dir port [latency_ms] [error_rate]");
+            System.exit(1);
+        }
+
+        ReplayArchive archive    = new ReplayArchive(new File(args[0]));
+        long          latency_ms = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        double        error_rate = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+
+        BotometerReplayServer server = new BotometerReplayServer(archive, Integer.parseInt(args[1]), latency_ms, error_rate);
+        logger.info("Botometer replay server listening on {}", server.getUrl());
+
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,275 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+* BotometerResult class. A Botometer reply, kept as the raw bytes read
+* off the connection. The scores are only decoded, in one streaming pass
+* with no JSON tree, the first time one of them is asked for; callers
+* that just pass the reply along never pay for a parse. Fields Botometer
+* didn't send come back as null.
+*
+* Reply format: https://market.mashape.com/OSoMe/botometer
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public final class BotometerResult {
+
+    private final byte[]    raw;
+    private volatile String json;
+
+    // Written once by decode(), published by the volatile decoded flag.
+    private volatile boolean    decoded = false;
+    private Map<String, Double> scores;
+    private Map<String, Double> categories;
+    private Map<String, Double> display_scores;
+    private Map<String, Double> cap;
+    private String              user_id;
+    private String              screen_name;
+    private String              error;
+
+    BotometerResult(byte[] raw) {
+        this.raw = (raw == null) ? new byte[0] : raw;
+    }
+
+   /**
+    * @param json a reply as returned by getBotometerResponseForScreenName.
+    * @return result wrapping the reply; nothing is parsed yet.
+    */
+    public static BotometerResult fromJson(String json) {
+        BotometerResult togo = new BotometerResult(json == null ? null : json.getBytes(StandardCharsets.UTF_8));
+        togo.json = json;
+        return togo;
+    }
+
+   /**
+    * @return overall score from the English language model, or null.
+    */
+    public Double getEnglishScore() {
+        return decode().scores.get("english");
+    }
+
+   /**
+    * @return overall score from the language independent model, or null.
+    */
+    public Double getUniversalScore() {
+        return decode().scores.get("universal");
+    }
+
+   /**
+    * @return category scores, e.g. "content", "friend", "network",
+    * "sentiment", "temporal" and "user"; empty if none were sent.
+    */
+    public Map<String, Double> getCategoryScores() {
+        return decode().categories;
+    }
+
+   /**
+    * @param category e.g. "network".
+    * @return that category's score, or null.
+    */
+    public Double getCategoryScore(String category) {
+        return decode().categories.get(category);
+    }
+
+   /**
+    * @return scores on Botometer's 0 to 5 display scale; empty if none were sent.
+    */
+    public Map<String, Double> getDisplayScores() {
+        return decode().display_scores;
+    }
+
+   /**
+    * @return Complete Automation Probability from the English model, or null.
+    */
+    public Double getCapEnglish() {
+        return decode().cap.get("english");
+    }
+
+   /**
+    * @return Complete Automation Probability from the universal model, or null.
+    */
+    public Double getCapUniversal() {
+        return decode().cap.get("universal");
+    }
+
+   /**
+    * @return id_str of the scored user as Botometer echoes it, or null.
+    */
+    public String getUserId() {
+        return decode().user_id;
+    }
+
+   /**
+    * @return screen name of the scored user as Botometer echoes it, or null.
+    */
+    public String getScreenName() {
+        return decode().screen_name;
+    }
+
+   /**
+    * @return the error Botometer or Mashape replied with, a description
+    * of why the reply couldn't be read, or null for a normal reply.
+    */
+    public String getError() {
+        return decode().error;
+    }
+
+   /**
+    * @return true if the reply carries at least one overall score.
+    */
+    public boolean hasScores() {
+        return !decode().scores.isEmpty();
+    }
+
+   /**
+    * @return a copy of the reply exactly as it was received.
+    */
+    public byte[] getRawBytes() {
+        return this.raw.clone();
+    }
+
+   /**
+    * @return the reply as a JSON String, built once on first call.
+    */
+    public String getJson() {
+        String togo = this.json;
+
+        if (togo == null) {
+            togo = new String(this.raw, StandardCharsets.UTF_8);
+            this.json = togo;
+        }
+
+        return togo;
+    }
+
+    @Override
+    public String toString() {
+        return getJson();
+    }
+
+    private BotometerResult decode() {
+        if (this.decoded)
+            return this;
+
+        synchronized (this) {
+            if (this.decoded)
+                return this;
+
+            Map<String, Double> scores         = Collections.emptyMap();
+            Map<String, Double> categories     = Collections.emptyMap();
+            Map<String, Double> display_scores = Collections.emptyMap();
+            Map<String, Double> cap            = Collections.emptyMap();
+
+            try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(this.raw), StandardCharsets.UTF_8))) {
+                reader.setLenient(true);
+                reader.beginObject();
+
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.skipValue();
+                        continue;
+                    }
+
+                    switch (name) {
+                        case "scores":         scores         = readScores(reader); break;
+                        case "categories":     categories     = readScores(reader); break;
+                        case "display_scores": display_scores = readScores(reader); break;
+                        case "cap":            cap            = readScores(reader); break;
+                        case "user":           readUser(reader); break;
+                        case "error":
+                        case "message":        this.error     = readString(reader); break;
+                        default:               reader.skipValue();
+                    }
+                }
+            } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+                this.error = "Unreadable Botometer reply: " + e.toString();
+            }
+
+            this.scores         = scores;
+            this.categories     = categories;
+            this.display_scores = display_scores;
+            this.cap            = cap;
+            this.decoded        = true;
+        }
+
+        return this;
+    }
+
+    private static Map<String, Double> readScores(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return Collections.emptyMap();
+        }
+
+        Map<String, Double> togo = new LinkedHashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            if (reader.peek() == JsonToken.NUMBER || reader.peek() == JsonToken.STRING)
+                togo.put(name, reader.nextDouble());
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+
+        return Collections.unmodifiableMap(togo);
+    }
+
+    private void readUser(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id_str":      this.user_id     = readString(reader); break;
+                case "screen_name": this.screen_name = readString(reader); break;
+                default:            reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN)
+            return token == JsonToken.BOOLEAN ? Boolean.toString(reader.nextBoolean()) : reader.nextString();
+
+        reader.skipValue();
+        return null;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+/**
+* CacheMode enum. How a single lookup uses the client's ScoreCache.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public enum CacheMode {
+    /** Return a cached response when there is one, otherwise score and store. */
+    USE,
+    /** Always score, then overwrite whatever is cached. */
+    REFRESH,
+    /** Always score and leave the cache untouched. */
+    BYPASS
+}
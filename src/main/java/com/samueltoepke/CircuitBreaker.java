@@ -0,0 +1,122 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+/**
+* CircuitBreaker class. Stops sending requests to an endpoint that keeps
+* failing. After failure_threshold failures in a row the circuit opens,
+* and requests are refused without being sent for open_ms. Then a single
+* trial request is let through: success closes the circuit, failure
+* opens it again. While it is open, lookups fail fast with
+* BotometerException.Reason.CIRCUIT_OPEN instead of piling up on a dead
+* endpoint.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public final class CircuitBreaker {
+
+    public static final int  DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MS           = 30000;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int  failure_threshold;
+    private final long open_ms;
+
+    private State   state            = State.CLOSED;
+    private int     failures         = 0;
+    private long    open_until_ms    = 0;
+    private boolean trial_in_flight  = false;
+    private long    trial_started_ms = 0;
+
+   /**
+    * Constructor for the CircuitBreaker object, with the default threshold and open time.
+    *
+    * @return instantiated CircuitBreaker object.
+    */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MS);
+    }
+
+   /**
+    * Constructor for the CircuitBreaker object.
+    *
+    * @param failure_threshold failures in a row that open the circuit.
+    * @param open_ms how long the circuit stays open before a trial request.
+    * @return instantiated CircuitBreaker object.
+    */
+    public CircuitBreaker(int failure_threshold, long open_ms) {
+        if (failure_threshold < 1 || open_ms < 0)
+            throw new IllegalArgumentException("CircuitBreaker: failure_threshold must be positive and open_ms not negative.");
+
+        this.failure_threshold = failure_threshold;
+        this.open_ms           = open_ms;
+    }
+
+   /**
+    * @return true if a request may be sent now. A true answer in the
+    * HALF_OPEN state makes this caller the trial request, and it must
+    * report back through recordSuccess or recordFailure.
+    */
+    synchronized boolean allowRequest() {
+        if (this.state == State.OPEN && System.currentTimeMillis() >= this.open_until_ms) {
+            this.state           = State.HALF_OPEN;
+            this.trial_in_flight = false;
+        }
+
+        if (this.state == State.CLOSED)
+            return true;
+
+        // A trial that never reported back (e.g. its lookup was cancelled)
+        // stops blocking the circuit after another open_ms.
+        long now = System.currentTimeMillis();
+        if (this.state == State.HALF_OPEN && (!this.trial_in_flight || now - this.trial_started_ms >= this.open_ms)) {
+            this.trial_in_flight  = true;
+            this.trial_started_ms = now;
+            return true;
+        }
+
+        return false;
+    }
+
+    synchronized void recordSuccess() {
+        this.state           = State.CLOSED;
+        this.failures        = 0;
+        this.trial_in_flight = false;
+    }
+
+    synchronized void recordFailure() {
+        this.failures++;
+
+        if (this.state == State.HALF_OPEN || this.failures >= this.failure_threshold) {
+            this.state           = State.OPEN;
+            this.open_until_ms   = System.currentTimeMillis() + this.open_ms;
+            this.trial_in_flight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+   /**
+    * @return when an open circuit lets a trial request through, in epoch ms.
+    */
+    public synchronized long getOpenUntil() {
+        return this.open_until_ms;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+* CredentialPool class. One TwitterSource per credential set, and the
+* routing that sends each account lookup to the member with the most quota
+* left. A member that has used up an endpoint's window is out of rotation
+* until that window resets. If every member is out, the one that resets
+* first is picked, and its requests wait in the rate limit scheduler.
+*
+* Rate limits are tracked per member: each endpoint name is qualified with
+* a SHA-256 fingerprint of the member's access token before it reaches the
+* scheduler. Clients sharing a scheduler and a token share its quota, and
+* the token itself never shows up in logs or exception messages.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class CredentialPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(CredentialPool.class);
+
+    private final List<Member>       members = new ArrayList<>();
+    private final RateLimitScheduler rate_limiter;
+    private final AtomicInteger      next    = new AtomicInteger();
+
+    CredentialPool(List<TwitterCredentials> credentials, Botometer4JOptions options) {
+        for (TwitterCredentials credential : credentials) {
+            TwitterSource source = options.getTwitterSource();
+
+            if (source == null)
+                source = new Twitter4JSource(credential, options);
+            if (options.getRecordTo() != null)
+                source = new RecordingTwitterSource(source, options.getRecordTo());
+
+            this.members.add(new Member(credential, source));
+        }
+
+        this.rate_limiter = options.getRateLimitScheduler();
+    }
+
+    int size() {
+        return this.members.size();
+    }
+
+   /**
+    * Picks the member to run one account lookup.
+    *
+    * @param endpoints the endpoints the lookup will call.
+    * @return member with the most quota left across those endpoints.
+    */
+    Member select(String... endpoints) {
+        // Rotating the starting point spreads ties, e.g. before any quota is known.
+        int start = Math.floorMod(this.next.getAndIncrement(), this.members.size());
+
+        if (this.rate_limiter == null || this.members.size() == 1)
+            return this.members.get(start);
+
+        Member best           = null;
+        long   best_quota     = -1;
+        Member earliest       = null;
+        long   earliest_reset = Long.MAX_VALUE;
+
+        for (int i = 0; i < this.members.size(); i++) {
+            Member member = this.members.get((start + i) % this.members.size());
+
+            long quota    = Long.MAX_VALUE;
+            long reset_at = 0;
+
+            for (String endpoint : endpoints) {
+                String key = member.key(endpoint);
+
+                if (this.rate_limiter.isExhausted(key))
+                    reset_at = Math.max(reset_at, this.rate_limiter.getResetAt(key));
+
+                int remaining = this.rate_limiter.getRemaining(key);
+                if (remaining >= 0)
+                    quota = Math.min(quota, remaining);
+            }
+
+            if (reset_at > 0) {
+                if (reset_at < earliest_reset) {
+                    earliest       = member;
+                    earliest_reset = reset_at;
+                }
+            } else if (quota > best_quota) {
+                best       = member;
+                best_quota = quota;
+            }
+        }
+
+        if (best == null) {
+            logger.warn("select: every credential is rate limited, waiting on the first to reset.");
+            return earliest;
+        }
+
+        return best;
+    }
+
+    /**
+    * Identifies a secret in logs and rate limit keys without giving it away.
+    *
+    * @param secret e.g. an access token or the Mashape key.
+    * @return the first 8 bytes of its SHA-256, as hex.
+    */
+    static String fingerprint(String secret) {
+        byte[] digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(String.valueOf(secret).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("CredentialPool: SHA-256 is not available.", nsae);
+        }
+
+        StringBuilder togo = new StringBuilder(16);
+        for (int i = 0; i < 8; i++)
+            togo.append(String.format("%02x", digest[i] & 0xff));
+
+        return togo.toString();
+    }
+
+   /**
+    * One credential set and the TwitterSource built from it.
+    */
+    static final class Member {
+        final TwitterCredentials credentials;
+        final TwitterSource      source;
+        final String             fingerprint;
+
+        Member(TwitterCredentials credentials, TwitterSource source) {
+            this.credentials = credentials;
+            this.source      = source;
+            this.fingerprint = fingerprint(credentials.getAccessToken());
+        }
+
+       /**
+        * @param endpoint endpoint name, e.g. RateLimitScheduler.USER_TIMELINE.
+        * @return the endpoint name qualified for this member's quota.
+        */
+        String key(String endpoint) {
+            return endpoint + "#" + this.fingerprint;
+        }
+    }
+}
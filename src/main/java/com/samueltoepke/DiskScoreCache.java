@@ -0,0 +1,323 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+* DiskScoreCache class. ScoreCache backed by an append-only local file, so
+* responses survive a restart. Every put appends a record; an in-memory
+* index points each key at its newest record, and only the response bytes
+* are read back on a hit. Superseded and expired records are dropped when
+* the file is compacted. That happens on open once they outnumber the
+* live ones, and again while the cache is in use, so a long-running cache
+* doesn't grow without bound. Expired entries are swept from the index
+* at most once a minute so that they count as dead.
+*
+* Record layout: key length (int), key (UTF-8), written at (long, epoch
+* millis), value length (int, -1 for a removal), value (UTF-8).
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class DiskScoreCache implements ScoreCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(DiskScoreCache.class);
+
+    static final int  COMPACT_MIN_RECORDS = 1024;  // Below this the file isn't worth rewriting in use.
+    static final long SWEEP_INTERVAL_MS   = 60000;
+
+    private final File                   file;
+    private final long                   ttl_ms;
+    private final Map<String, Location>  index  = new HashMap<>();
+    private final AtomicLong             hits   = new AtomicLong();
+    private final AtomicLong             misses = new AtomicLong();
+    private RandomAccessFile             raf;
+    private long                         records       = 0;
+    private long                         next_sweep_at = 0;
+
+    /**
+    * Constructor for the DiskScoreCache object. Opens, or creates, the
+    * store and rebuilds the index from it.
+    *
+    * @param file local file holding the store.
+    * @param ttl_ms how long a response stays valid after it was written.
+    * @return instantiated DiskScoreCache object.
+    */
+    public DiskScoreCache(File file, long ttl_ms) throws IOException {
+        String method = "DiskScoreCache: ";
+        logger.debug("{}STARTING.", method);
+
+        if (file == null || ttl_ms < 1)
+            throw new IllegalArgumentException(method + "constructor arguments incorrect, make sure file populated and ttl_ms positive.");
+
+        this.file   = file;
+        this.ttl_ms = ttl_ms;
+        this.raf    = new RandomAccessFile(file, "rw");
+
+        load();
+        sweep(System.currentTimeMillis());
+
+        if (this.records > 2 * this.index.size())
+            compact();
+
+        logger.debug("{}loaded {} entries from {}", method, this.index.size(), file);
+        logger.debug("{}ENDING.", method);
+    }
+
+    @Override
+    public String get(String key) {
+        CachedScore togo = lookup(key);
+
+        if (togo == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+        return togo.value;
+    }
+
+   /**
+    * Reads a live entry along with the time it was written.
+    *
+    * @param key cache key.
+    * @return the entry, or null if absent, expired or unreadable.
+    */
+    synchronized CachedScore lookup(String key) {
+        Location location = this.index.get(key);
+
+        if (location == null)
+            return null;
+
+        if (isExpired(location.written_at)) {
+            this.index.remove(key);
+            return null;
+        }
+
+        try {
+            byte[] value = new byte[location.length];
+            this.raf.seek(location.offset);
+            this.raf.readFully(value);
+
+            return new CachedScore(new String(value, StandardCharsets.UTF_8), location.written_at);
+        } catch (IOException io) {
+            logger.error("lookup: {}", io.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, String value) {
+        append(key, value.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+    }
+
+    @Override
+    public void remove(String key) {
+        append(key, null, System.currentTimeMillis());
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.raf.close();
+        this.index.clear();
+    }
+
+   /**
+    * Rewrites the store with only the live entries.
+    */
+    public synchronized void compact() throws IOException {
+        String method = "compact: ";
+        logger.debug("{}STARTING.", method);
+
+        File temp = new File(this.file.getPath() + ".compact");
+        Map<String, Location> compacted = new HashMap<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            long offset = 0;
+
+            for (Map.Entry<String, Location> entry : this.index.entrySet()) {
+                Location location = entry.getValue();
+                if (isExpired(location.written_at))
+                    continue;
+
+                byte[] value = new byte[location.length];
+                this.raf.seek(location.offset);
+                this.raf.readFully(value);
+
+                byte[] record = toRecord(entry.getKey(), value, location.written_at);
+                out.write(record);
+
+                compacted.put(entry.getKey(), new Location(offset + record.length - value.length, value.length, location.written_at));
+                offset += record.length;
+            }
+        }
+
+        this.raf.close();
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        this.raf = new RandomAccessFile(this.file, "rw");
+
+        this.index.clear();
+        this.index.putAll(compacted);
+        this.records = compacted.size();
+
+        logger.debug("{}ENDING.", method);
+    }
+
+    private synchronized void append(String key, byte[] value, long written_at) {
+        try {
+            byte[] record = toRecord(key, value, written_at);
+            long   start  = this.raf.length();
+
+            this.raf.seek(start);
+            this.raf.write(record);
+            this.records++;
+
+            if (value == null)
+                this.index.remove(key);
+            else
+                this.index.put(key, new Location(start + record.length - value.length, value.length, written_at));
+
+            if (written_at >= this.next_sweep_at)
+                sweep(written_at);
+
+            if (this.records > COMPACT_MIN_RECORDS && this.records > 2 * this.index.size())
+                compact();
+        } catch (IOException io) {
+            logger.error("append: {}", io.toString());
+        }
+    }
+
+   /**
+    * Drops expired entries from the index. Until then an entry that is
+    * never read again would count as live and hold off compaction.
+    */
+    private void sweep(long now) {
+        this.index.values().removeIf(location -> isExpired(location.written_at));
+        this.next_sweep_at = now + Math.min(this.ttl_ms, SWEEP_INTERVAL_MS);
+    }
+
+    private void load() throws IOException {
+        long offset = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            for (;;) {
+                byte[] key;
+                long   written_at;
+                int    length;
+
+                try {
+                    key        = new byte[in.readInt()];
+                    in.readFully(key);
+                    written_at = in.readLong();
+                    length     = in.readInt();
+                    if (length > 0)
+                        in.readFully(new byte[length]);
+                } catch (EOFException eof) {
+                    break;
+                }
+
+                long value_offset = offset + 4 + key.length + 8 + 4;
+                String key_string = new String(key, StandardCharsets.UTF_8);
+
+                if (length < 0)
+                    this.index.remove(key_string);
+                else
+                    this.index.put(key_string, new Location(value_offset, length, written_at));
+
+                offset = value_offset + Math.max(length, 0);
+                this.records++;
+            }
+        }
+
+        // Drop a record left half-written by a crash.
+        if (this.raf.length() > offset) {
+            logger.warn("load: truncating partial record at offset {} in {}", offset, this.file);
+            this.raf.setLength(offset);
+        }
+    }
+
+    private static byte[] toRecord(String key, byte[] value, long written_at) throws IOException {
+        byte[] key_bytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(key_bytes.length + 16 + (value == null ? 0 : value.length));
+
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(key_bytes.length);
+        out.write(key_bytes);
+        out.writeLong(written_at);
+        out.writeInt(value == null ? -1 : value.length);
+        if (value != null)
+            out.write(value);
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private boolean isExpired(long written_at) {
+        return System.currentTimeMillis() - written_at >= this.ttl_ms;
+    }
+
+    private static final class Location {
+        final long offset;
+        final int  length;
+        final long written_at;
+
+        Location(long offset, int length, long written_at) {
+            this.offset     = offset;
+            this.length     = length;
+            this.written_at = written_at;
+        }
+    }
+
+    static final class CachedScore {
+        final String value;
+        final long   written_at;
+
+        CachedScore(String value, long written_at) {
+            this.value      = value;
+            this.written_at = written_at;
+        }
+    }
+}
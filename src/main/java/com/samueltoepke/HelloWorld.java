@@ -54,7 +54,7 @@ public class HelloWorld {
 
         // 1. Instantiate Botometer4J
         logger.info(method + "1. Instantiate Botometer4J Object.");
-        Botometer4J botometer = new Botometer4J(prop.getProperty("mashape_key"), prop.getProperty("consumer_key"), prop.getProperty("consumer_secret"), prop.getProperty("access_token"), prop.getProperty("access_token_secret"));
+        Botometer4J botometer = new Botometer4J(prop.getProperty("mashape_key"), TwitterCredentials.fromProperties(prop), new Botometer4JOptions());
 
         // 2. Get Botometer Response
         logger.info(method + "2. Execute Botometer4J Query/Requests.");
@@ -69,6 +69,13 @@ public class HelloWorld {
         logger.info(method + "....Querying Twitter Username: " + screen_name);
         logger.info(method + "....Result: " + botometer_response);
 
+        // 3. Release Botometer4J Connections
+        try {
+            botometer.close();
+        } catch (Exception e) {
+            logger.error(e.toString());
+        }
+
         logger.info(method + "ENDING.");
     }
 }
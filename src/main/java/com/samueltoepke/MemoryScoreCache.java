@@ -0,0 +1,119 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* MemoryScoreCache class. In-memory ScoreCache bounded by entry count,
+* evicting the least recently used entry once full, with every entry
+* expiring a fixed time after it was written.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class MemoryScoreCache implements ScoreCache {
+
+    private final long                               ttl_ms;
+    private final LinkedHashMap<String, CachedEntry> entries;
+    private final AtomicLong                         hits   = new AtomicLong();
+    private final AtomicLong                         misses = new AtomicLong();
+
+    /**
+    * Constructor for the MemoryScoreCache object.
+    *
+    * @param max_entries number of responses kept before LRU eviction.
+    * @param ttl_ms how long a response stays valid after it was written.
+    * @return instantiated MemoryScoreCache object.
+    */
+    public MemoryScoreCache(final int max_entries, long ttl_ms) {
+        if (max_entries < 1 || ttl_ms < 1)
+            throw new IllegalArgumentException("MemoryScoreCache: max_entries and ttl_ms must be positive.");
+
+        this.ttl_ms  = ttl_ms;
+        this.entries = new LinkedHashMap<String, CachedEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+                return size() > max_entries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized String get(String key) {
+        CachedEntry entry = this.entries.get(key);
+
+        if (entry == null || isExpired(entry.written_at)) {
+            if (entry != null)
+                this.entries.remove(key);
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+        return entry.value;
+    }
+
+    @Override
+    public void put(String key, String value) {
+        put(key, value, System.currentTimeMillis());
+    }
+
+   /**
+    * Stores a response keeping the time it was originally written, so an
+    * entry promoted from a slower tier doesn't outlive its TTL.
+    */
+    synchronized void put(String key, String value, long written_at) {
+        if (!isExpired(written_at))
+            this.entries.put(key, new CachedEntry(value, written_at));
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        this.entries.remove(key);
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        this.entries.clear();
+    }
+
+    private boolean isExpired(long written_at) {
+        return System.currentTimeMillis() - written_at >= this.ttl_ms;
+    }
+
+    private static final class CachedEntry {
+        final String value;
+        final long   written_at;
+
+        CachedEntry(String value, long written_at) {
+            this.value      = value;
+            this.written_at = written_at;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+* PayloadEntity class. HTTP request body that serializes the Botometer
+* payload straight onto the connection's output stream as it is sent,
+* so neither a JSON tree nor a String of the payload is ever built.
+* Sent chunked, since the length isn't known until it has been written.
+* With gzip set, the UTF-8 bytes go through a GZIPOutputStream on their
+* way to the connection and the body is sent with Content-Encoding: gzip.
+* Each write to the connection reports its duration and size on the wire
+* to the BotometerMetrics.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class PayloadEntity extends AbstractHttpEntity {
+
+    private final AccountData      account_data;
+    private final PayloadProfile   profile;
+    private final BotometerMetrics metrics;
+    private final boolean          gzip;
+
+    PayloadEntity(AccountData account_data) {
+        this(account_data, PayloadProfile.FULL, BotometerMetrics.NONE, false);
+    }
+
+    PayloadEntity(AccountData account_data, PayloadProfile profile, BotometerMetrics metrics, boolean gzip) {
+        this.account_data = account_data;
+        this.profile      = profile;
+        this.metrics      = metrics;
+        this.gzip         = gzip;
+
+        setContentType("application/json; charset=UTF-8");
+        if (gzip)
+            setContentEncoding("gzip");
+        setChunked(true);
+    }
+
+   /**
+    * Writes the payload as JSON text, uncompressed, e.g. for logging.
+    *
+    * @param out destination, left open.
+    */
+    void writeTo(Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        new PayloadWriter(writer, this.profile).writePayload(this.account_data);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        long started = System.nanoTime();
+
+        CountingOutputStream counted = new CountingOutputStream(out);
+        writeEncoded(counted);
+
+        this.metrics.latency(BotometerMetrics.PAYLOAD_BUILD, System.nanoTime() - started);
+        this.metrics.payloadBytes(counted.count);
+    }
+
+    // UTF-8, gzipped if asked for. Finishing the gzip stream writes its
+    // trailer without closing the connection's stream underneath.
+    private void writeEncoded(OutputStream out) throws IOException {
+        GZIPOutputStream compressed = this.gzip ? new GZIPOutputStream(out, 8192) : null;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed == null ? out : compressed, StandardCharsets.UTF_8));
+        writeTo(writer);
+        writer.flush();
+
+        if (compressed != null)
+            compressed.finish();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true; // Re-serialized from the account data on every write.
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeEncoded(bytes);
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+* PayloadProfile class. How much of an account goes into a Botometer
+* payload: the most timeline statuses and mentions to fetch and send, and
+* which optional status fields to write. A limit of 0 leaves that section
+* as an empty array and skips its Twitter request altogether, so a lighter
+* profile saves Twitter quota as well as upload time.
+*
+* FULL is what Botometer documents and the default. The lighter presets
+* are meant for triage, e.g. as the quick tier set with
+* Botometer4JOptions.setQuickScreen, where only accounts whose quick score
+* lands near the threshold are scored again in full.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public final class PayloadProfile {
+
+   /**
+    * Optional parts of each status in the payload. The ids, text, counts,
+    * dates, flags and the status's user are always written.
+    */
+    public enum Field {
+        /** urls, user_mentions, hashtags (and symbols) of each status. */
+        ENTITIES,
+        /** The original status embedded in a retweet. */
+        RETWEETED_STATUS,
+        /** in_reply_to_user_id, in_reply_to_status_id and their _str forms. */
+        REPLY_FIELDS,
+        /** contributors, coordinates, geo, place and symbols, always null or empty. */
+        CONSTANT_FIELDS
+    }
+
+    /** 200 statuses, 100 mentions, every field: the payload Botometer documents. */
+    public static final PayloadProfile FULL = new PayloadProfile(Botometer4J.MAX_TWEETS, Botometer4J.MAX_MENTIONS, EnumSet.allOf(Field.class));
+
+    /** The full timeline with every field, and no mentions search. */
+    public static final PayloadProfile NO_MENTIONS = new PayloadProfile(Botometer4J.MAX_TWEETS, 0, EnumSet.allOf(Field.class));
+
+    /** The latest 50 statuses, no mentions, and only the fields every status needs. */
+    public static final PayloadProfile QUICK = new PayloadProfile(50, 0, EnumSet.noneOf(Field.class));
+
+    private final int        max_tweets;
+    private final int        max_mentions;
+    private final Set<Field> fields;
+
+   /**
+    * Constructor for the PayloadProfile object.
+    *
+    * @param max_tweets most timeline statuses, 0 to Botometer4J.MAX_TWEETS.
+    * @param max_mentions most mentions, 0 to Botometer4J.MAX_MENTIONS.
+    * @param fields optional status fields to include.
+    * @return instantiated PayloadProfile object.
+    */
+    public PayloadProfile(int max_tweets, int max_mentions, Set<Field> fields) {
+        if (max_tweets < 0 || max_tweets > Botometer4J.MAX_TWEETS)
+            throw new IllegalArgumentException("PayloadProfile: max_tweets must be between 0 and " + Botometer4J.MAX_TWEETS + ".");
+        if (max_mentions < 0 || max_mentions > Botometer4J.MAX_MENTIONS)
+            throw new IllegalArgumentException("PayloadProfile: max_mentions must be between 0 and " + Botometer4J.MAX_MENTIONS + ".");
+        if (fields == null)
+            throw new IllegalArgumentException("PayloadProfile: fields argument incorrect, make sure populated.");
+
+        this.max_tweets   = max_tweets;
+        this.max_mentions = max_mentions;
+        this.fields       = fields.isEmpty() ? Collections.<Field>emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    public int getMaxTweets() {
+        return this.max_tweets;
+    }
+
+    public int getMaxMentions() {
+        return this.max_mentions;
+    }
+
+    public Set<Field> getFields() {
+        return this.fields;
+    }
+
+   /**
+    * @param field optional status field.
+    * @return true if the payload includes it.
+    */
+    public boolean includes(Field field) {
+        return this.fields.contains(field);
+    }
+
+   /**
+    * @param field optional status field to leave out.
+    * @return this profile without the field, or this profile if it was already left out.
+    */
+    public PayloadProfile without(Field field) {
+        if (!includes(field))
+            return this;
+
+        Set<Field> togo = EnumSet.noneOf(Field.class);
+        togo.addAll(this.fields);
+        togo.remove(field);
+
+        return new PayloadProfile(this.max_tweets, this.max_mentions, togo);
+    }
+
+   /**
+    * Profiles are equal when they have the same limits and fields, so one
+    * built with without() matches a preset that leaves the same field out.
+    */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof PayloadProfile))
+            return false;
+
+        PayloadProfile that = (PayloadProfile) other;
+        return this.max_tweets == that.max_tweets && this.max_mentions == that.max_mentions && this.fields.equals(that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.max_tweets, this.max_mentions, this.fields);
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadProfile[max_tweets=" + this.max_tweets + ", max_mentions=" + this.max_mentions + ", fields=" + this.fields + "]";
+    }
+}
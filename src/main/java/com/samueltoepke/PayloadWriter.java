@@ -0,0 +1,526 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import com.google.gson.stream.JsonWriter;
+
+import twitter4j.*;
+
+/**
+* PayloadWriter class. Writes the Botometer check_account payload field by
+* field to a JsonWriter, without building a JsonObject tree or a String
+* of the whole payload first. Output is the same as the compact form of
+* the equivalent Gson tree, nulls included.
+*
+* A PayloadWriter is scoped to one payload. Within it each user is
+* serialized once and its JSON is reused wherever that user appears
+* again, which is on every status of a timeline. Statuses whose id
+* occurs more than once (a tweet in both the timeline and the mentions,
+* or retweeted several times) are memoized the same way. Memoized JSON
+* is looked up by id and reused only for the same object, or for a copy
+* equal in every field its JSON is written from, so two copies that
+* differ in anything (a profile edited between the timeline and the
+* mentions responses, or a stale copy from the TimelineStore) are
+* serialized separately. For a status those are the fields that can
+* change between two responses (counts, the authenticating account's
+* favorited and retweeted flags, possibly_sensitive) and its user; the
+* rest of a status is fixed once it is posted.
+*
+* The PayloadProfile decides how many timeline statuses and mentions are
+* written and which optional status fields go with them. PayloadProfile.FULL
+* writes everything, as Botometer's sample payload does.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class PayloadWriter {
+
+    // Immutable and thread-safe, unlike SimpleDateFormat, so one instance serves every payload.
+    private static final FastDateFormat CREATED_AT_FORMAT =
+        FastDateFormat.getInstance("EEE MMM dd HH:mm:ss Z yyyy", TimeZone.getTimeZone("GMT"), Locale.getDefault(Locale.Category.FORMAT));
+
+    private static final int                                  USER_DATE_CACHE_SIZE = 256; // Power of two.
+    private static final AtomicReferenceArray<FormattedDate>  USER_DATE_CACHE      = new AtomicReferenceArray<>(USER_DATE_CACHE_SIZE);
+
+    private final JsonWriter          writer;
+    private final PayloadProfile      profile;
+    private final Map<Long, List<Rendered<User>>>   user_json;
+    private final Map<Long, List<Rendered<Status>>> status_json;
+    private Set<Long>                               repeated_status_ids;
+
+    PayloadWriter(JsonWriter writer) {
+        this(writer, PayloadProfile.FULL);
+    }
+
+    PayloadWriter(JsonWriter writer, PayloadProfile profile) {
+        this(writer, profile, new HashMap<Long, List<Rendered<User>>>(), new HashMap<Long, List<Rendered<Status>>>(),
+            Collections.<Long>emptySet());
+    }
+
+    private PayloadWriter(JsonWriter writer, PayloadProfile profile, Map<Long, List<Rendered<User>>> user_json,
+            Map<Long, List<Rendered<Status>>> status_json, Set<Long> repeated_status_ids) {
+        this.writer              = writer;
+        this.profile             = profile;
+        this.user_json           = user_json;
+        this.status_json         = status_json;
+        this.repeated_status_ids = repeated_status_ids;
+
+        this.writer.setSerializeNulls(true);
+        this.writer.setLenient(true);
+    }
+
+   /**
+    * Writes the whole payload: the user being scored, the timeline and
+    * the mentions, each cut to the profile's limit.
+    *
+    * @param account_data user, timeline and mentions from getAccountData.
+    */
+    void writePayload(AccountData account_data) throws IOException {
+        User user = account_data.getUser();
+
+        List<Status> timeline = account_data.getTimeline();
+        if (timeline.size() > this.profile.getMaxTweets())
+            timeline = timeline.subList(0, this.profile.getMaxTweets());
+
+        List<Status> mentions = account_data.getMentions();
+        if (mentions.size() > this.profile.getMaxMentions())
+            mentions = mentions.subList(0, this.profile.getMaxMentions());
+
+        this.repeated_status_ids = findRepeatedStatusIds(timeline, mentions);
+
+        this.writer.beginObject();
+
+        this.writer.name("user").beginObject();
+        this.writer.name("id").value(Long.toString(user.getId()));
+        this.writer.name("screen_name").value(user.getScreenName());
+        this.writer.endObject();
+
+        this.writer.name("timeline").beginArray();
+        for (Status status : timeline)
+            writeStatus(status);
+        this.writer.endArray();
+
+        this.writer.name("mentions").beginArray();
+        for (Status status : mentions)
+            writeStatus(status);
+        this.writer.endArray();
+
+        this.writer.endObject();
+        this.writer.flush();
+    }
+
+   /**
+    * Takes a Status, and writes a JSON object that can be parsed by the
+    * Botometer web service. Direct serialization using Gson would be
+    * ideal, but the fields don't line up exactly.
+    *
+    * @param status object.
+    */
+    void writeStatus(final Status status) throws IOException {
+        if (status == null)
+            throw new IllegalArgumentException("writeStatus: status argument incorrect, make sure populated.");
+
+        if (!this.repeated_status_ids.contains(status.getId())) {
+            writeStatusObject(status);
+            return;
+        }
+
+        List<Rendered<Status>> copies = this.status_json.computeIfAbsent(status.getId(), id -> new ArrayList<>(1));
+        for (Rendered<Status> copy : copies) {
+            if (sameStatus(copy.object, status)) {
+                this.writer.jsonValue(copy.json);
+                return;
+            }
+        }
+
+        String json = render(child -> child.writeStatusObject(status));
+        copies.add(new Rendered<>(status, json));
+        this.writer.jsonValue(json);
+    }
+
+    private void writeStatusObject(Status status) throws IOException {
+        JsonWriter w = this.writer;
+        w.beginObject();
+
+        w.name("id").value(status.getId());
+        w.name("id_str").value(Long.toString(status.getId()));
+        w.name("possibly_sensitive").value(status.isPossiblySensitive());
+        w.name("favorited").value(status.isFavorited());
+        w.name("lang").value(status.getLang());
+        w.name("retweeted").value(status.isRetweeted());
+        w.name("retweet_count").value(status.getRetweetCount());
+        w.name("truncated").value(status.isTruncated());
+        if (this.profile.includes(PayloadProfile.Field.CONSTANT_FIELDS))
+            w.name("contributors").nullValue(); // All 'null' in Botometer sample payload.
+        w.name("favorite_count").value(status.getFavoriteCount());
+        w.name("source").value(status.getSource());
+        w.name("text").value(status.getText());
+        w.name("in_reply_to_screen_name").value(status.getInReplyToScreenName());
+        if (this.profile.includes(PayloadProfile.Field.CONSTANT_FIELDS)) {
+            w.name("coordinates").nullValue(); // All 'null' in Botometer sample payload.
+            w.name("geo").nullValue();         // All 'null' in Botometer sample payload.
+            w.name("place").nullValue();       // All 'null' in Botometer sample payload.
+        }
+        w.name("created_at").value(getFormattedDate(status.getCreatedAt()));
+
+        if (this.profile.includes(PayloadProfile.Field.REPLY_FIELDS))
+            writeReplyFields(status);
+
+        // Field "only surfaces when the Tweet is a 'quote tweet'." https://developer.twitter.com/en/docs/tweets/data-dictionary/overview/tweet-object
+        w.name("is_quote_status").value(status.getQuotedStatus() != null);
+
+        if (this.profile.includes(PayloadProfile.Field.ENTITIES))
+            writeStatusEntities(status);
+
+        if (status.getRetweetedStatus() != null && this.profile.includes(PayloadProfile.Field.RETWEETED_STATUS)) {
+            w.name("retweeted_status");
+            writeStatus(status.getRetweetedStatus());
+        }
+
+        w.name("user");
+        writeUser(status.getUser());
+
+        w.endObject();
+    }
+
+    private void writeReplyFields(Status status) throws IOException {
+        JsonWriter w = this.writer;
+
+        if (status.getInReplyToUserId() == -1) {
+            w.name("in_reply_to_user_id").nullValue();
+            w.name("in_reply_to_user_id_str").nullValue();
+        } else {
+            w.name("in_reply_to_user_id").value(status.getInReplyToUserId());
+            w.name("in_reply_to_user_id_str").value(Long.toString(status.getInReplyToUserId()));
+        }
+
+        if (status.getInReplyToStatusId() == -1) {
+            w.name("in_reply_to_status_id").nullValue();
+            w.name("in_reply_to_status_id_str").nullValue();
+        } else {
+            w.name("in_reply_to_status_id").value(status.getInReplyToStatusId());
+            w.name("in_reply_to_status_id_str").value(Long.toString(status.getInReplyToStatusId()));
+        }
+    }
+
+    private void writeStatusEntities(Status status) throws IOException {
+        JsonWriter w = this.writer;
+        w.name("entities").beginObject();
+
+        w.name("urls").beginArray();
+        for (URLEntity url_entity : status.getURLEntities()) {
+            w.beginObject();
+            w.name("url").value(url_entity.getURL());
+            w.name("expanded_url").value(url_entity.getExpandedURL());
+            w.name("display_url").value(url_entity.getDisplayURL());
+            writeIndices(url_entity.getStart(), url_entity.getEnd());
+            w.endObject();
+        }
+        w.endArray();
+
+        if (this.profile.includes(PayloadProfile.Field.CONSTANT_FIELDS))
+            w.name("symbols").beginArray().endArray(); // All 'null' in Botometer sample payload.
+
+        w.name("user_mentions").beginArray();
+        for (UserMentionEntity user_mention_entity : status.getUserMentionEntities()) {
+            w.beginObject();
+            w.name("name").value(user_mention_entity.getName());
+            w.name("id_str").value(Long.toString(user_mention_entity.getId()));
+            w.name("id").value(user_mention_entity.getId());
+            w.name("screen_name").value(user_mention_entity.getScreenName());
+            writeIndices(user_mention_entity.getStart(), user_mention_entity.getEnd());
+            w.endObject();
+        }
+        w.endArray();
+
+        w.name("hashtags").beginArray();
+        for (HashtagEntity hashtag_entity : status.getHashtagEntities()) {
+            w.beginObject();
+            w.name("text").value(hashtag_entity.getText());
+            writeIndices(hashtag_entity.getStart(), hashtag_entity.getEnd());
+            w.endObject();
+        }
+        w.endArray();
+
+        w.endObject();
+    }
+
+   /**
+    * Takes a User (from a Status), and writes a JSON object that can be
+    * parsed by the Botometer web service. Direct serialization using Gson
+    * would be ideal, but the fields don't line up exactly.
+    *
+    * @param user object.
+    */
+    void writeUser(final User user) throws IOException {
+        if (user == null)
+            throw new IllegalArgumentException("writeUser: user argument incorrect, make sure populated.");
+
+        List<Rendered<User>> copies = this.user_json.computeIfAbsent(user.getId(), id -> new ArrayList<>(1));
+        for (Rendered<User> copy : copies) {
+            if (sameUser(copy.object, user)) {
+                this.writer.jsonValue(copy.json);
+                return;
+            }
+        }
+
+        String json = render(child -> child.writeUserObject(user));
+        copies.add(new Rendered<>(user, json));
+        this.writer.jsonValue(json);
+    }
+
+    private void writeUserObject(User user) throws IOException {
+        JsonWriter w = this.writer;
+        w.beginObject();
+
+        w.name("favourites_count").value(user.getFavouritesCount());
+        w.name("followers_count").value(user.getFollowersCount());
+        w.name("default_profile_image").value(user.isDefaultProfileImage());
+        w.name("description").value(user.getDescription());
+        w.name("url").value(user.getURL());
+        w.name("profile_background_color").value(user.getProfileBackgroundColor());
+        w.name("statuses_count").value(user.getStatusesCount());
+        w.name("follow_request_sent").value(user.isFollowRequestSent());
+        w.name("created_at").value(getFormattedUserDate(user.getCreatedAt()));
+        w.name("profile_image_url_https").value(user.getProfileImageURLHttps());
+        w.name("friends_count").value(user.getFriendsCount());
+        w.name("profile_image_url").value(user.getProfileImageURL());
+        w.name("profile_background_image_url_https").value(user.getProfileBackgroundImageUrlHttps());
+        w.name("profile_sidebar_fill_color").value(user.getProfileSidebarFillColor());
+        w.name("verified").value(user.isVerified());
+        w.name("contributors_enabled").value(user.isContributorsEnabled());
+        w.name("is_translator").value(user.isTranslator());
+        w.name("default_profile").value(user.isDefaultProfile());
+        w.name("lang").value(user.getLang());
+        w.name("protected").value(user.isProtected());
+        w.name("location").value(user.getLocation());
+        w.name("profile_text_color").value(user.getProfileTextColor());
+        w.name("profile_banner_url").value(user.getProfileBannerURL());
+        w.name("screen_name").value(user.getScreenName());
+        w.name("id_str").value(Long.toString(user.getId()));
+        w.name("name").value(user.getName());
+        w.name("profile_background_tile").value(user.isProfileBackgroundTiled());
+        w.name("profile_sidebar_border_color").value(user.getProfileSidebarBorderColor());
+        w.name("utc_offset").value(user.getUtcOffset());
+        w.name("id").value(user.getId());
+        w.name("profile_link_color").value(user.getProfileLinkColor());
+        w.name("profile_background_image_url").value(user.getProfileBackgroundImageURL());
+        w.name("listed_count").value(user.getListedCount());
+        w.name("geo_enabled").value(user.isGeoEnabled());
+        w.name("profile_use_background_image").value(user.isProfileUseBackgroundImage());
+        w.name("time_zone").value(user.getTimeZone());
+
+        w.name("entities").beginObject();
+
+        w.name("description").beginObject();
+        w.name("urls").beginArray().endArray();
+        w.endObject();
+
+        URLEntity url_entity = user.getURLEntity();
+        w.name("url").beginObject();
+        w.name("urls").beginArray();
+        w.beginObject();
+        w.name("url").value(url_entity.getURL());
+        w.name("expanded_url").value(url_entity.getExpandedURL());
+        w.name("display_url").value(url_entity.getDisplayURL());
+        writeIndices(url_entity.getStart(), url_entity.getEnd());
+        w.endObject();
+        w.endArray();
+        w.endObject();
+
+        w.endObject();
+
+        // Couldn't find a direct mapping from Twitter4J to the Botometer API
+        //   for the following fields. Service still appears to work without them.
+        //   notifications, following, has_extended_profile,
+        //   is_translation_enabled, translator_type
+
+        w.endObject();
+    }
+
+    private interface Fragment {
+        void write(PayloadWriter child) throws IOException;
+    }
+
+   /**
+    * Serializes one object on its own, sharing this payload's memo tables.
+    */
+    private String render(Fragment fragment) throws IOException {
+        StringWriter togo = new StringWriter();
+        fragment.write(new PayloadWriter(new JsonWriter(togo), this.profile, this.user_json, this.status_json, this.repeated_status_ids));
+        return togo.toString();
+    }
+
+    private static Set<Long> findRepeatedStatusIds(List<Status> timeline, List<Status> mentions) {
+        Set<Long> seen     = new HashSet<>();
+        Set<Long> repeated = new HashSet<>();
+
+        for (Status status : timeline)
+            collectStatusIds(status, seen, repeated);
+        for (Status status : mentions)
+            collectStatusIds(status, seen, repeated);
+
+        return repeated;
+    }
+
+    private static void collectStatusIds(Status status, Set<Long> seen, Set<Long> repeated) {
+        for (Status s = status; s != null; s = s.getRetweetedStatus()) {
+            if (!seen.add(s.getId()))
+                repeated.add(s.getId());
+        }
+    }
+
+   /**
+    * An object and the JSON it was serialized to.
+    */
+    private static final class Rendered<T> {
+        final T      object;
+        final String json;
+
+        Rendered(T object, String json) {
+            this.object = object;
+            this.json   = json;
+        }
+    }
+
+   /**
+    * Whether two users with the same id would be written the same way:
+    * compares every field writeUserObject writes. Copies parsed from one
+    * response are usually the same object, which is checked first.
+    */
+    private static boolean sameUser(User a, User b) {
+        if (a == b)
+            return true;
+        if (a == null || b == null)
+            return false;
+
+        return a.getFavouritesCount() == b.getFavouritesCount() && a.getFollowersCount() == b.getFollowersCount()
+            && a.getStatusesCount() == b.getStatusesCount() && a.getFriendsCount() == b.getFriendsCount()
+            && a.getListedCount() == b.getListedCount() && a.getUtcOffset() == b.getUtcOffset()
+            && a.isDefaultProfileImage() == b.isDefaultProfileImage() && a.isFollowRequestSent() == b.isFollowRequestSent()
+            && a.isVerified() == b.isVerified() && a.isContributorsEnabled() == b.isContributorsEnabled()
+            && a.isTranslator() == b.isTranslator() && a.isDefaultProfile() == b.isDefaultProfile()
+            && a.isProtected() == b.isProtected() && a.isProfileBackgroundTiled() == b.isProfileBackgroundTiled()
+            && a.isGeoEnabled() == b.isGeoEnabled() && a.isProfileUseBackgroundImage() == b.isProfileUseBackgroundImage()
+            && Objects.equals(a.getCreatedAt(), b.getCreatedAt())
+            && Objects.equals(a.getDescription(), b.getDescription()) && Objects.equals(a.getURL(), b.getURL())
+            && Objects.equals(a.getProfileBackgroundColor(), b.getProfileBackgroundColor())
+            && Objects.equals(a.getProfileImageURLHttps(), b.getProfileImageURLHttps())
+            && Objects.equals(a.getProfileImageURL(), b.getProfileImageURL())
+            && Objects.equals(a.getProfileBackgroundImageUrlHttps(), b.getProfileBackgroundImageUrlHttps())
+            && Objects.equals(a.getProfileSidebarFillColor(), b.getProfileSidebarFillColor())
+            && Objects.equals(a.getLang(), b.getLang()) && Objects.equals(a.getLocation(), b.getLocation())
+            && Objects.equals(a.getProfileTextColor(), b.getProfileTextColor())
+            && Objects.equals(a.getProfileBannerURL(), b.getProfileBannerURL())
+            && Objects.equals(a.getScreenName(), b.getScreenName()) && Objects.equals(a.getName(), b.getName())
+            && Objects.equals(a.getProfileSidebarBorderColor(), b.getProfileSidebarBorderColor())
+            && Objects.equals(a.getProfileLinkColor(), b.getProfileLinkColor())
+            && Objects.equals(a.getProfileBackgroundImageURL(), b.getProfileBackgroundImageURL())
+            && Objects.equals(a.getTimeZone(), b.getTimeZone())
+            && sameURLEntity(a.getURLEntity(), b.getURLEntity());
+    }
+
+    private static boolean sameURLEntity(URLEntity a, URLEntity b) {
+        if (a == b)
+            return true;
+        if (a == null || b == null)
+            return false;
+
+        return Objects.equals(a.getURL(), b.getURL()) && Objects.equals(a.getExpandedURL(), b.getExpandedURL())
+            && Objects.equals(a.getDisplayURL(), b.getDisplayURL()) && a.getStart() == b.getStart() && a.getEnd() == b.getEnd();
+    }
+
+   /**
+    * Whether two statuses with the same id would be written the same way:
+    * compares the fields that can change between responses, the user and
+    * the retweeted status.
+    */
+    private static boolean sameStatus(Status a, Status b) {
+        if (a == b)
+            return true;
+        if (a == null || b == null)
+            return false;
+
+        return a.getId() == b.getId() && a.getRetweetCount() == b.getRetweetCount() && a.getFavoriteCount() == b.getFavoriteCount()
+            && a.isFavorited() == b.isFavorited() && a.isRetweeted() == b.isRetweeted()
+            && a.isPossiblySensitive() == b.isPossiblySensitive()
+            && sameUser(a.getUser(), b.getUser()) && sameStatus(a.getRetweetedStatus(), b.getRetweetedStatus());
+    }
+
+    private void writeIndices(int start, int end) throws IOException {
+        this.writer.name("indices").beginArray().value(start).value(end).endArray();
+    }
+
+   /**
+    * Takes a java.util.Date and returns a String in the format
+    * that is expected by the Botometer service. E.g. "Mon Sep 06 13:31:27 +0000 2010".
+    *
+    * @param date object.
+    * @return String
+    */
+    static String getFormattedDate(Date date) {
+        return CREATED_AT_FORMAT.format(date);
+    }
+
+   /**
+    * Same as getFormattedDate, for user created_at values. Those repeat
+    * across the statuses in a payload and across payloads, so recent
+    * ones are kept in a small direct-mapped cache that needs no lock.
+    *
+    * @param date object.
+    * @return String
+    */
+    static String getFormattedUserDate(Date date) {
+        long millis = date.getTime();
+        int  slot   = (int) (millis ^ (millis >>> 32)) & (USER_DATE_CACHE_SIZE - 1);
+
+        FormattedDate cached = USER_DATE_CACHE.get(slot);
+        if (cached != null && cached.millis == millis)
+            return cached.formatted;
+
+        String togo = CREATED_AT_FORMAT.format(date);
+        USER_DATE_CACHE.set(slot, new FormattedDate(millis, togo));
+
+        return togo;
+    }
+
+    private static final class FormattedDate {
+        final long   millis;
+        final String formatted;
+
+        FormattedDate(long millis, String formatted) {
+            this.millis    = millis;
+            this.formatted = formatted;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import twitter4j.RateLimitStatus;
+
+/**
+* RateLimitScheduler class. Client-side admission control for the Twitter
+* and Botometer endpoints. Every request first calls acquire() for its
+* endpoint, and every response reports the quota left through update().
+*
+* Each endpoint is a token bucket. It refills at the rate that spreads the
+* remaining quota evenly over the time left in the window, and holds at
+* most a small burst. Under sustained load, requests are paced just under
+* the limit instead of running into it. Once only the reserve is left,
+* callers wait for the window to reset. Until an endpoint has reported
+* its quota, requests go straight through. Once a window has reset, a
+* single request goes first and the rest wait until its response brings
+* back the new quota, so a stale reset time can't release a flood.
+*
+* One scheduler can be shared by several clients that use the same keys.
+* Twitter endpoints are tracked per credential set, under the endpoint
+* name qualified with a fingerprint of the access token, e.g.
+* "/statuses/user_timeline#3f2a9c01d4e5b687".
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class RateLimitScheduler {
+
+    private final static Logger logger = LoggerFactory.getLogger(RateLimitScheduler.class);
+
+    // Twitter resource names, as used by GET application/rate_limit_status.
+    public static final String USERS_SHOW      = "/users/show/:id";
+    public static final String USERS_LOOKUP    = "/users/lookup";
+    public static final String USER_TIMELINE   = "/statuses/user_timeline";
+    public static final String SEARCH_TWEETS   = "/search/tweets";
+    public static final String BOTOMETER       = "botometer/check_account";
+
+    public static final int  DEFAULT_BURST         = 5;
+    public static final int  DEFAULT_RESERVE       = 1;
+    public static final long DEFAULT_RETRY_AFTER_MS = 60000;
+    public static final int  MAX_RATE_LIMITED_RETRIES = 3;
+
+    private static final long PROBE_POLL_MS    = 100;
+    private static final long PROBE_TIMEOUT_MS = 30000; // A probe that never reports back stops blocking after this.
+
+    private final int                          burst;
+    private final int                          reserve;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+    * Constructor for the RateLimitScheduler object, using the default
+    * burst and reserve.
+    *
+    * @return instantiated RateLimitScheduler object.
+    */
+    public RateLimitScheduler() {
+        this(DEFAULT_BURST, DEFAULT_RESERVE);
+    }
+
+    /**
+    * Constructor for the RateLimitScheduler object.
+    *
+    * @param burst most requests admitted back to back on one endpoint.
+    * @param reserve requests left unused in every window, as a safety margin.
+    * @return instantiated RateLimitScheduler object.
+    */
+    public RateLimitScheduler(int burst, int reserve) {
+        if (burst < 1 || reserve < 0)
+            throw new IllegalArgumentException("RateLimitScheduler: burst must be positive and reserve not negative.");
+
+        this.burst   = burst;
+        this.reserve = reserve;
+    }
+
+   /**
+    * Blocks until a request to the endpoint may be sent.
+    *
+    * @param endpoint endpoint name, e.g. USER_TIMELINE.
+    */
+    public void acquire(String endpoint) throws InterruptedException {
+        Window window = window(endpoint);
+        long   wait_ms;
+
+        while ((wait_ms = window.admit(System.currentTimeMillis())) > 0) {
+            logger.debug("acquire: {} waiting {} ms.", endpoint, wait_ms);
+            Thread.sleep(wait_ms);
+        }
+    }
+
+   /**
+    * Records the quota reported with a Twitter response.
+    *
+    * @param endpoint endpoint name.
+    * @param status rate limit status from the response, ignored if null.
+    */
+    public void update(String endpoint, RateLimitStatus status) {
+        if (status != null)
+            update(endpoint, status.getLimit(), status.getRemaining(), status.getResetTimeInSeconds() * 1000L);
+    }
+
+   /**
+    * Records the quota reported with a response.
+    *
+    * @param endpoint endpoint name.
+    * @param limit requests allowed per window.
+    * @param remaining requests left in the current window.
+    * @param reset_at_ms when the window resets, in epoch millis.
+    */
+    public void update(String endpoint, int limit, int remaining, long reset_at_ms) {
+        window(endpoint).update(limit, remaining, reset_at_ms);
+    }
+
+   /**
+    * Records a response that carried no quota. After a window reset this
+    * ends the wait on the first request; requests go straight through
+    * again until a response reports the quota.
+    *
+    * @param endpoint endpoint name.
+    */
+    public void unreported(String endpoint) {
+        window(endpoint).unreported();
+    }
+
+   /**
+    * Records that the endpoint refused a request for being over its limit,
+    * holding further requests until the given time. A reset time that has
+    * already passed, e.g. from clock skew or a missing header, holds them
+    * for DEFAULT_RETRY_AFTER_MS instead.
+    *
+    * @param endpoint endpoint name.
+    * @param reset_at_ms when requests may resume, in epoch millis.
+    */
+    public void exhausted(String endpoint, long reset_at_ms) {
+        long now = System.currentTimeMillis();
+        if (reset_at_ms <= now)
+            reset_at_ms = now + DEFAULT_RETRY_AFTER_MS;
+
+        logger.warn("exhausted: {} rate limited until {}.", endpoint, reset_at_ms);
+        window(endpoint).update(-1, 0, reset_at_ms);
+    }
+
+   /**
+    * @param endpoint endpoint name.
+    * @return requests left in the current window, or -1 if not known yet.
+    */
+    public int getRemaining(String endpoint) {
+        return window(endpoint).getRemaining(System.currentTimeMillis());
+    }
+
+   /**
+    * @param endpoint endpoint name.
+    * @return true if only the reserve is left and the window hasn't reset yet.
+    */
+    public boolean isExhausted(String endpoint) {
+        return window(endpoint).isExhausted(System.currentTimeMillis());
+    }
+
+   /**
+    * @param endpoint endpoint name.
+    * @return when the current window resets, in epoch millis, or 0 if not known.
+    */
+    public long getResetAt(String endpoint) {
+        return window(endpoint).getResetAt();
+    }
+
+    private Window window(String endpoint) {
+        Window togo = this.windows.get(endpoint);
+
+        if (togo == null) {
+            Window created = new Window();
+            togo = this.windows.putIfAbsent(endpoint, created);
+            if (togo == null)
+                togo = created;
+        }
+
+        return togo;
+    }
+
+    /**
+    * Quota and token bucket for one endpoint.
+    */
+    private final class Window {
+        private int    limit       = -1;
+        private int    remaining   = -1; // -1 until the endpoint has reported its quota.
+        private long   reset_at    = 0;
+        private double tokens      = RateLimitScheduler.this.burst;
+        private long   last_refill = System.currentTimeMillis();
+        private boolean probing    = false; // Window reset and no response has reported the new quota yet.
+        private long   probe_at    = 0;     // When the request that went first was admitted, 0 if none.
+
+       /**
+        * @return 0 if a request was admitted, otherwise how long to wait before asking again.
+        */
+        synchronized long admit(long now) {
+            if (this.remaining >= 0 && now >= this.reset_at) {
+                // Window rolled over; quota is unknown again until the next response.
+                this.remaining = -1;
+                this.tokens    = RateLimitScheduler.this.burst;
+                this.probing   = true;
+                this.probe_at  = 0;
+            }
+
+            if (this.remaining < 0) {
+                if (!this.probing)
+                    return 0;
+
+                // One request finds out the new quota; the rest wait for its response.
+                if (this.probe_at == 0 || now - this.probe_at >= PROBE_TIMEOUT_MS) {
+                    this.probe_at = now;
+                    return 0;
+                }
+
+                return Math.min(PROBE_POLL_MS, this.probe_at + PROBE_TIMEOUT_MS - now);
+            }
+
+            int usable = this.remaining - RateLimitScheduler.this.reserve;
+            if (usable <= 0)
+                return Math.max(1, this.reset_at - now);
+
+            double rate = (double) usable / Math.max(1, this.reset_at - now); // Tokens per ms.
+            this.tokens      = Math.min(RateLimitScheduler.this.burst, this.tokens + (now - this.last_refill) * rate);
+            this.last_refill = now;
+
+            if (this.tokens >= 1) {
+                this.tokens -= 1;
+                this.remaining--;
+                return 0;
+            }
+
+            return Math.max(1, (long) Math.ceil((1 - this.tokens) / rate));
+        }
+
+        synchronized void update(int limit, int remaining, long reset_at) {
+            if (limit >= 0)
+                this.limit = limit;
+            this.remaining = remaining;
+            this.reset_at  = reset_at;
+            this.probing   = false;
+            this.probe_at  = 0;
+        }
+
+        synchronized void unreported() {
+            if (this.remaining < 0) {
+                this.probing  = false;
+                this.probe_at = 0;
+            }
+        }
+
+        synchronized int getRemaining(long now) {
+            return (this.remaining >= 0 && now >= this.reset_at) ? this.limit : this.remaining;
+        }
+
+        synchronized boolean isExhausted(long now) {
+            return this.remaining >= 0 && now < this.reset_at && this.remaining <= RateLimitScheduler.this.reserve;
+        }
+
+        synchronized long getResetAt() {
+            return this.reset_at;
+        }
+    }
+}
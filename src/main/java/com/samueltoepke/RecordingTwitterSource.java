@@ -0,0 +1,134 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import twitter4j.*;
+
+/**
+* RecordingTwitterSource class. Passes every call through to another
+* TwitterSource and saves the raw JSON of each response to a
+* ReplayArchive, so it can be replayed later by ReplayTwitterSource.
+* The wrapped source must have the Twitter4J JSON store enabled, as
+* Twitter4JSource does.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class RecordingTwitterSource implements TwitterSource {
+
+    private final static Logger logger = LoggerFactory.getLogger(RecordingTwitterSource.class);
+
+    private final TwitterSource delegate;
+    private final ReplayArchive archive;
+
+    /**
+    * Constructor for the RecordingTwitterSource object.
+    *
+    * @param delegate source that actually serves the calls.
+    * @param archive where the responses are saved.
+    * @return instantiated RecordingTwitterSource object.
+    */
+    public RecordingTwitterSource(TwitterSource delegate, ReplayArchive archive) {
+        if (delegate == null || archive == null)
+            throw new IllegalArgumentException("RecordingTwitterSource: constructor arguments incorrect, make sure all populated.");
+
+        this.delegate = delegate;
+        this.archive  = archive;
+    }
+
+    @Override
+    public User showUser(String screen_name) throws TwitterException {
+        User togo = this.delegate.showUser(screen_name);
+
+        // Raw JSON is only held for the thread's latest response, so read it right away.
+        String raw = TwitterObjectFactory.getRawJSON(togo);
+
+        try {
+            if (raw != null)
+                this.archive.putUser(screen_name, raw);
+        } catch (IOException io) {
+            logger.error("showUser: failed recording {}, {}", screen_name, io.toString());
+        }
+
+        return togo;
+    }
+
+    @Override
+    public ResponseList<User> lookupUsers(String... screen_names) throws TwitterException {
+        ResponseList<User> togo = this.delegate.lookupUsers(screen_names);
+
+        for (User user : togo) {
+            String raw = TwitterObjectFactory.getRawJSON(user);
+
+            try {
+                if (raw != null)
+                    this.archive.putUser(user.getScreenName(), raw);
+            } catch (IOException io) {
+                logger.error("lookupUsers: failed recording {}, {}", user.getScreenName(), io.toString());
+            }
+        }
+
+        return togo;
+    }
+
+    @Override
+    public ResponseList<Status> getUserTimeline(String screen_name, Paging paging) throws TwitterException {
+        ResponseList<Status> togo = this.delegate.getUserTimeline(screen_name, paging);
+
+        try {
+            this.archive.addTimeline(screen_name, rawById(togo));
+        } catch (IOException io) {
+            logger.error("getUserTimeline: failed recording {}, {}", screen_name, io.toString());
+        }
+
+        return togo;
+    }
+
+    @Override
+    public QueryResult search(Query query) throws TwitterException {
+        QueryResult togo = this.delegate.search(query);
+        String screen_name = ReplayTwitterSource.mentionedScreenName(query);
+
+        try {
+            if (screen_name != null)
+                this.archive.addMentions(screen_name, rawById(togo.getTweets()));
+        } catch (IOException io) {
+            logger.error("search: failed recording {}, {}", screen_name, io.toString());
+        }
+
+        return togo;
+    }
+
+    private static Map<Long, String> rawById(List<Status> statuses) {
+        Map<Long, String> togo = new LinkedHashMap<>();
+
+        for (Status status : statuses) {
+            String raw = TwitterObjectFactory.getRawJSON(status);
+            if (raw != null)
+                togo.put(status.getId(), raw);
+        }
+
+        return togo;
+    }
+}
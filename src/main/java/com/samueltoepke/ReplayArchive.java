@@ -0,0 +1,189 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+* ReplayArchive class. A directory of recorded Twitter and Botometer
+* responses, written while recording and read back by ReplayTwitterSource
+* and BotometerReplayServer. The layout is plain files, so an archive
+* can be checked in or edited by hand:
+*
+*   users/&lt;screen_name&gt;.json          raw users/show JSON
+*   timelines/&lt;screen_name&gt;.tsv      one status per line, "id TAB raw JSON", newest first
+*   mentions/&lt;screen_name&gt;.tsv       same, for the mentions search
+*   botometer/&lt;user_id&gt;.json         Botometer check_account reply
+*
+* Screen names are stored lower case. Only the characters Twitter allows
+* in one (letters, digits and underscores) are accepted, so no name can
+* reach a file outside its directory.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class ReplayArchive {
+
+    private static final Pattern SCREEN_NAME = Pattern.compile("[a-z0-9_]+");
+
+    private final File directory;
+
+    /**
+    * Constructor for the ReplayArchive object. Creates the directory
+    * layout if it doesn't exist yet.
+    *
+    * @param directory root of the archive.
+    * @return instantiated ReplayArchive object.
+    */
+    public ReplayArchive(File directory) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("ReplayArchive: directory argument incorrect, make sure populated.");
+
+        this.directory = directory;
+
+        for (String sub : new String[] { "users", "timelines", "mentions", "botometer" })
+            Files.createDirectories(new File(directory, sub).toPath());
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    public synchronized void putUser(String screen_name, String raw_json) throws IOException {
+        write(userFile(screen_name), raw_json);
+    }
+
+    public String getUser(String screen_name) throws IOException {
+        return read(userFile(screen_name));
+    }
+
+   /**
+    * Merges recorded statuses into the stored timeline, keyed by status id.
+    *
+    * @param screen_name owner of the timeline.
+    * @param raw_by_id raw JSON of each status, by status id.
+    */
+    public synchronized void addTimeline(String screen_name, Map<Long, String> raw_by_id) throws IOException {
+        merge(statusFile("timelines", screen_name), raw_by_id);
+    }
+
+   /**
+    * @param screen_name owner of the timeline.
+    * @return raw JSON of each recorded status, newest first; empty if none.
+    */
+    public List<String> getTimeline(String screen_name) throws IOException {
+        return readStatuses(statusFile("timelines", screen_name));
+    }
+
+   /**
+    * Merges recorded mentions into the stored ones, keyed by status id.
+    *
+    * @param screen_name account being mentioned.
+    * @param raw_by_id raw JSON of each status, by status id.
+    */
+    public synchronized void addMentions(String screen_name, Map<Long, String> raw_by_id) throws IOException {
+        merge(statusFile("mentions", screen_name), raw_by_id);
+    }
+
+   /**
+    * @param screen_name account being mentioned.
+    * @return raw JSON of each recorded mention, newest first; empty if none.
+    */
+    public List<String> getMentions(String screen_name) throws IOException {
+        return readStatuses(statusFile("mentions", screen_name));
+    }
+
+    public synchronized void putBotometerReply(long user_id, String body) throws IOException {
+        write(new File(this.directory, "botometer/" + user_id + ".json"), body);
+    }
+
+    public String getBotometerReply(long user_id) throws IOException {
+        return read(new File(this.directory, "botometer/" + user_id + ".json"));
+    }
+
+    private File userFile(String screen_name) {
+        return new File(this.directory, "users/" + key(screen_name) + ".json");
+    }
+
+    private File statusFile(String kind, String screen_name) {
+        return new File(this.directory, kind + "/" + key(screen_name) + ".tsv");
+    }
+
+    private static String key(String screen_name) {
+        String togo = (screen_name == null) ? "" : screen_name.toLowerCase(Locale.ROOT);
+
+        if (!SCREEN_NAME.matcher(togo).matches())
+            throw new IllegalArgumentException("ReplayArchive: screen_name must be letters, digits and underscores, was '" + screen_name + "'.");
+
+        return togo;
+    }
+
+    private static void merge(File file, Map<Long, String> raw_by_id) throws IOException {
+        TreeMap<Long, String> merged = new TreeMap<>(Collections.reverseOrder());
+
+        if (file.exists()) {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab > 0)
+                    merged.put(Long.parseLong(line.substring(0, tab)), line.substring(tab + 1));
+            }
+        }
+
+        merged.putAll(raw_by_id);
+
+        List<String> lines = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, String> entry : merged.entrySet())
+            lines.add(entry.getKey() + "\t" + entry.getValue());
+
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStatuses(File file) throws IOException {
+        List<String> togo = new ArrayList<>();
+
+        if (!file.exists())
+            return togo;
+
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0)
+                togo.add(line.substring(tab + 1));
+        }
+
+        return togo;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws IOException {
+        if (!file.exists())
+            return null;
+
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import twitter4j.*;
+
+/**
+* ReplayTwitterSource class. TwitterSource that serves responses recorded
+* in a ReplayArchive, with no network access. It honors count, since_id
+* and max_id the way the live API does, can add a fixed latency to every
+* call, and can fail a share of calls with an HTTP 503 so retry and
+* backoff paths can be load tested. Parsed responses are kept in memory,
+* so repeated lookups measure the library rather than JSON parsing.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class ReplayTwitterSource implements TwitterSource {
+
+    private final ReplayArchive                         archive;
+    private final long                                  latency_ms;
+    private final double                                error_rate;
+    private final ConcurrentMap<String, User>           users     = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<Status>>   timelines = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<Status>>   mentions  = new ConcurrentHashMap<>();
+
+    /**
+    * Constructor for the ReplayTwitterSource object, with no added
+    * latency and no injected errors.
+    *
+    * @param archive recorded responses.
+    * @return instantiated ReplayTwitterSource object.
+    */
+    public ReplayTwitterSource(ReplayArchive archive) {
+        this(archive, 0, 0.0);
+    }
+
+    /**
+    * Constructor for the ReplayTwitterSource object.
+    *
+    * @param archive recorded responses.
+    * @param latency_ms delay added to every call.
+    * @param error_rate share of calls, 0.0 to 1.0, failed with an HTTP 503.
+    * @return instantiated ReplayTwitterSource object.
+    */
+    public ReplayTwitterSource(ReplayArchive archive, long latency_ms, double error_rate) {
+        if (archive == null || latency_ms < 0 || error_rate < 0.0 || error_rate > 1.0)
+            throw new IllegalArgumentException("ReplayTwitterSource: constructor arguments incorrect, make sure archive populated and rates in range.");
+
+        this.archive    = archive;
+        this.latency_ms = latency_ms;
+        this.error_rate = error_rate;
+    }
+
+    @Override
+    public User showUser(String screen_name) throws TwitterException {
+        simulate();
+
+        User togo = user(screen_name);
+        if (togo == null)
+            throw new TwitterException("No recorded user for " + screen_name, null, 404);
+
+        return togo;
+    }
+
+    @Override
+    public ResponseList<User> lookupUsers(String... screen_names) throws TwitterException {
+        simulate();
+
+        ReplayResponseList<User> togo = new ReplayResponseList<>();
+        for (String screen_name : screen_names) {
+            User user = user(screen_name);
+            if (user != null)
+                togo.add(user);
+        }
+
+        // Like Twitter, a lookup that finds nobody is a 404 rather than an empty list.
+        if (togo.isEmpty())
+            throw new TwitterException("No recorded users for lookup", null, 404);
+
+        return togo;
+    }
+
+    private User user(String screen_name) throws TwitterException {
+        String key  = screen_name.toLowerCase(Locale.ROOT);
+        User   togo = this.users.get(key);
+
+        if (togo == null) {
+            String raw = read(() -> this.archive.getUser(screen_name));
+            if (raw == null)
+                return null;
+
+            togo = TwitterObjectFactory.createUser(raw);
+            this.users.putIfAbsent(key, togo);
+        }
+
+        return togo;
+    }
+
+    @Override
+    public ResponseList<Status> getUserTimeline(String screen_name, Paging paging) throws TwitterException {
+        simulate();
+
+        List<Status> recorded = statuses(this.timelines, screen_name, () -> this.archive.getTimeline(screen_name));
+        int count = paging.getCount() > 0 ? paging.getCount() : 20;
+
+        return window(recorded, count, paging.getSinceId(), paging.getMaxId());
+    }
+
+    @Override
+    public QueryResult search(Query query) throws TwitterException {
+        simulate();
+
+        String screen_name = mentionedScreenName(query);
+        List<Status> recorded = (screen_name == null) ? new ArrayList<Status>()
+            : statuses(this.mentions, screen_name, () -> this.archive.getMentions(screen_name));
+        int count = query.getCount() > 0 ? query.getCount() : 15;
+
+        return new ReplayQueryResult(query, window(recorded, count, query.getSinceId(), query.getMaxId()));
+    }
+
+   /**
+    * @param query a mentions search, as built by Botometer4J: "@screen_name".
+    * @return the screen name, or null if the query isn't a mentions search.
+    */
+    static String mentionedScreenName(Query query) {
+        String text = query.getQuery();
+
+        if (text == null || !text.startsWith("@") || text.length() < 2)
+            return null;
+
+        int space = text.indexOf(' ');
+        return space < 0 ? text.substring(1) : text.substring(1, space);
+    }
+
+    private interface ArchiveRead<T> {
+        T read() throws IOException;
+    }
+
+    private static <T> T read(ArchiveRead<T> read) throws TwitterException {
+        try {
+            return read.read();
+        } catch (IOException io) {
+            throw new TwitterException("Failed reading replay archive", io);
+        }
+    }
+
+    private static List<Status> statuses(ConcurrentMap<String, List<Status>> parsed, String screen_name, ArchiveRead<List<String>> raw) throws TwitterException {
+        String       key  = screen_name.toLowerCase(Locale.ROOT);
+        List<Status> togo = parsed.get(key);
+
+        if (togo == null) {
+            togo = new ArrayList<>();
+            for (String json : read(raw))
+                togo.add(TwitterObjectFactory.createStatus(json));
+
+            parsed.putIfAbsent(key, togo);
+        }
+
+        return togo;
+    }
+
+    private static ReplayResponseList<Status> window(List<Status> newest_first, int count, long since_id, long max_id) {
+        ReplayResponseList<Status> togo = new ReplayResponseList<>();
+
+        for (Status status : newest_first) {
+            if (togo.size() == count)
+                break;
+            if (max_id > 0 && status.getId() > max_id)
+                continue;
+            if (since_id > 0 && status.getId() <= since_id)
+                break;
+
+            togo.add(status);
+        }
+
+        return togo;
+    }
+
+    private void simulate() throws TwitterException {
+        if (this.latency_ms > 0) {
+            try {
+                Thread.sleep(this.latency_ms);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new TwitterException("Interrupted during simulated latency", ie);
+            }
+        }
+
+        if (this.error_rate > 0.0 && ThreadLocalRandom.current().nextDouble() < this.error_rate)
+            throw new TwitterException("Injected error", null, 503);
+    }
+
+    private static final class ReplayResponseList<T> extends ArrayList<T> implements ResponseList<T> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public RateLimitStatus getRateLimitStatus() {
+            return null;
+        }
+
+        @Override
+        public int getAccessLevel() {
+            return TwitterResponse.NONE;
+        }
+    }
+
+    private static final class ReplayQueryResult implements QueryResult {
+        private static final long serialVersionUID = 1L;
+
+        private final Query        query;
+        private final List<Status> tweets;
+
+        ReplayQueryResult(Query query, List<Status> tweets) {
+            this.query  = query;
+            this.tweets = tweets;
+        }
+
+        @Override
+        public long getSinceId() {
+            return this.query.getSinceId();
+        }
+
+        @Override
+        public long getMaxId() {
+            return this.tweets.isEmpty() ? -1 : this.tweets.get(0).getId();
+        }
+
+        @Override
+        public String getRefreshURL() {
+            return null;
+        }
+
+        @Override
+        public int getCount() {
+            return this.tweets.size();
+        }
+
+        @Override
+        public double getCompletedIn() {
+            return 0.0;
+        }
+
+        @Override
+        public String getQuery() {
+            return this.query.getQuery();
+        }
+
+        @Override
+        public List<Status> getTweets() {
+            return this.tweets;
+        }
+
+        @Override
+        public Query nextQuery() {
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+
+        @Override
+        public RateLimitStatus getRateLimitStatus() {
+            return null;
+        }
+
+        @Override
+        public int getAccessLevel() {
+            return TwitterResponse.NONE;
+        }
+    }
+}
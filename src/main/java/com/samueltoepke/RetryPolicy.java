@@ -0,0 +1,95 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+* RetryPolicy class. How often, and how far apart, a request that failed
+* for a transient reason (a network error or a 5xx) is sent again. Delays
+* grow exponentially from the base delay up to the cap, with full jitter,
+* so clients that failed together don't retry together.
+* https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public final class RetryPolicy {
+
+    public static final int  DEFAULT_MAX_ATTEMPTS  = 4;
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS  = 30000;
+
+    /** A single attempt: failures are reported straight away. */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int  max_attempts;
+    private final long base_delay_ms;
+    private final long max_delay_ms;
+
+   /**
+    * Constructor for the RetryPolicy object, with the default attempts and delays.
+    *
+    * @return instantiated RetryPolicy object.
+    */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+   /**
+    * Constructor for the RetryPolicy object.
+    *
+    * @param max_attempts attempts in total, including the first.
+    * @param base_delay_ms upper bound of the delay before the first retry.
+    * @param max_delay_ms upper bound of any one delay.
+    * @return instantiated RetryPolicy object.
+    */
+    public RetryPolicy(int max_attempts, long base_delay_ms, long max_delay_ms) {
+        if (max_attempts < 1 || base_delay_ms < 0 || max_delay_ms < base_delay_ms)
+            throw new IllegalArgumentException("RetryPolicy: max_attempts must be positive and 0 <= base_delay_ms <= max_delay_ms.");
+
+        this.max_attempts  = max_attempts;
+        this.base_delay_ms = base_delay_ms;
+        this.max_delay_ms  = max_delay_ms;
+    }
+
+    public int getMaxAttempts() {
+        return this.max_attempts;
+    }
+
+   /**
+    * @param attempt attempts made so far, starting at 1.
+    * @return true if another attempt is allowed.
+    */
+    boolean canRetry(int attempt) {
+        return attempt < this.max_attempts;
+    }
+
+   /**
+    * Sleeps before the next attempt: a random time up to
+    * base_delay_ms * 2^(attempt - 1), capped at max_delay_ms.
+    *
+    * @param attempt attempts made so far, starting at 1.
+    */
+    void backoff(int attempt) throws InterruptedException {
+        long ceiling = this.base_delay_ms << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > this.max_delay_ms)
+            ceiling = this.max_delay_ms;
+
+        if (ceiling > 0)
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.Closeable;
+
+/**
+* ScoreCache interface. Stores Botometer responses so accounts that were
+* scored recently don't go back out to Twitter and Botometer. Keys are
+* built by Botometer4J from the user id and screen name; values are the
+* JSON String Botometer returned. Implementations must be thread-safe.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public interface ScoreCache extends Closeable {
+
+   /**
+    * @param key cache key.
+    * @return cached Botometer response, or null if absent or expired.
+    */
+    String get(String key);
+
+   /**
+    * @param key cache key.
+    * @param value Botometer response to store.
+    */
+    void put(String key, String value);
+
+   /**
+    * @param key cache key to drop.
+    */
+    void remove(String key);
+
+   /**
+    * @return number of get calls that found a live entry.
+    */
+    long getHitCount();
+
+   /**
+    * @return number of get calls that found nothing, or an expired entry.
+    */
+    long getMissCount();
+}
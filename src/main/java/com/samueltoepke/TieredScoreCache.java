@@ -0,0 +1,113 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* TieredScoreCache class. A MemoryScoreCache in front of a DiskScoreCache.
+* Reads try memory first and promote disk hits into memory; writes and
+* removals go to both tiers.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class TieredScoreCache implements ScoreCache {
+
+    private final MemoryScoreCache memory;
+    private final DiskScoreCache   disk;
+    private final AtomicLong       hits   = new AtomicLong();
+    private final AtomicLong       misses = new AtomicLong();
+
+    /**
+    * Constructor for the TieredScoreCache object.
+    *
+    * @param memory fast, size-bounded tier.
+    * @param disk tier that survives restarts.
+    * @return instantiated TieredScoreCache object.
+    */
+    public TieredScoreCache(MemoryScoreCache memory, DiskScoreCache disk) {
+        if (memory == null || disk == null)
+            throw new IllegalArgumentException("TieredScoreCache: constructor arguments incorrect, make sure all populated.");
+
+        this.memory = memory;
+        this.disk   = disk;
+    }
+
+    @Override
+    public String get(String key) {
+        String togo = this.memory.get(key);
+
+        if (togo == null) {
+            DiskScoreCache.CachedScore cached = this.disk.lookup(key);
+
+            if (cached != null) {
+                this.memory.put(key, cached.value, cached.written_at);
+                togo = cached.value;
+            }
+        }
+
+        if (togo == null)
+            this.misses.incrementAndGet();
+        else
+            this.hits.incrementAndGet();
+
+        return togo;
+    }
+
+    @Override
+    public void put(String key, String value) {
+        this.memory.put(key, value);
+        this.disk.put(key, value);
+    }
+
+    @Override
+    public void remove(String key) {
+        this.memory.remove(key);
+        this.disk.remove(key);
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+   /**
+    * @return the in-memory tier, for its own hit/miss counters.
+    */
+    public MemoryScoreCache getMemoryTier() {
+        return this.memory;
+    }
+
+   /**
+    * @return the on-disk tier, for its own hit/miss counters.
+    */
+    public DiskScoreCache getDiskTier() {
+        return this.disk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.memory.close();
+        this.disk.close();
+    }
+}
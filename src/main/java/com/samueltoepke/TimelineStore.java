@@ -0,0 +1,174 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import twitter4j.Status;
+
+/**
+* TimelineStore class. Keeps the last timeline and mentions fetched for
+* each account, newest first, so a later lookup only needs to ask Twitter
+* for statuses newer than the ones already held. Bounded by number of
+* accounts, evicting the least recently used.
+*
+* Each window remembers the limit it was fetched for. A lookup with a
+* smaller limit reuses a larger window; one with a larger limit fetches
+* in full and replaces it. New statuses are only merged in front of a
+* window when all of them were fetched, so there is never a gap between
+* the two.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class TimelineStore {
+
+    private final Map<String, Window> timelines;
+    private final Map<String, Window> mentions;
+
+    TimelineStore(int max_accounts) {
+        this.timelines = lruMap(max_accounts);
+        this.mentions  = lruMap(max_accounts);
+    }
+
+   /**
+    * @param screen_name account.
+    * @param limit most statuses the caller is going to use.
+    * @return the stored timeline window, or null if there is none covering limit.
+    */
+    synchronized Window getTimeline(String screen_name, int limit) {
+        return covering(this.timelines.get(key(screen_name)), limit);
+    }
+
+   /**
+    * Stores a timeline fetched after getTimeline.
+    *
+    * @param screen_name account.
+    * @param stored window returned by getTimeline, whose newest id the fetch used as since_id; null if none.
+    * @param fresh statuses fetched, newest first.
+    * @param limit most statuses the fetch asked for.
+    * @return the window for the caller, newest first, at most limit long.
+    */
+    synchronized List<Status> putTimeline(String screen_name, Window stored, List<Status> fresh, int limit) {
+        return update(this.timelines, key(screen_name), stored, fresh, limit);
+    }
+
+    synchronized Window getMentions(String screen_name, int limit) {
+        return covering(this.mentions.get(key(screen_name)), limit);
+    }
+
+    synchronized List<Status> putMentions(String screen_name, Window stored, List<Status> fresh, int limit) {
+        return update(this.mentions, key(screen_name), stored, fresh, limit);
+    }
+
+    private static Window covering(Window window, int limit) {
+        return (window != null && window.limit >= limit) ? window : null;
+    }
+
+    private static List<Status> update(Map<String, Window> windows, String key, Window stored, List<Status> fresh, int limit) {
+        // A fetch that stopped at its limit may have left newer statuses
+        // unseen; merging it in front of the old window would hide a gap.
+        boolean complete = fresh.size() < limit;
+
+        if (stored != null && complete) {
+            List<Status> merged = merge(fresh, stored.statuses, stored.limit);
+            windows.put(key, new Window(merged, stored.limit));
+            return (merged.size() > limit) ? merged.subList(0, limit) : merged;
+        }
+
+        // Don't trade a larger window for a smaller one.
+        if (stored == null || stored.limit <= limit)
+            windows.put(key, new Window(fresh, limit));
+
+        return fresh;
+    }
+
+   /**
+    * Places newly fetched statuses in front of the stored ones, both
+    * newest first, dropping duplicates and keeping at most limit.
+    *
+    * @param fresh statuses newer than the stored window.
+    * @param stored previously fetched window.
+    * @param limit size of the window to keep.
+    * @return merged window, newest first.
+    */
+    static List<Status> merge(List<Status> fresh, List<Status> stored, int limit) {
+        List<Status> togo = new ArrayList<>(limit);
+        Set<Long>    seen = new HashSet<>();
+
+        for (Status status : fresh) {
+            if (togo.size() == limit)
+                return togo;
+            if (seen.add(status.getId()))
+                togo.add(status);
+        }
+
+        for (Status status : stored) {
+            if (togo.size() == limit)
+                return togo;
+            if (seen.add(status.getId()))
+                togo.add(status);
+        }
+
+        return togo;
+    }
+
+   /**
+    * @param statuses window, newest first.
+    * @return id of the newest status, or -1 if there are none.
+    */
+    static long newestId(List<Status> statuses) {
+        return (statuses == null || statuses.isEmpty()) ? -1 : statuses.get(0).getId();
+    }
+
+   /**
+    * @param window stored window, or null.
+    * @return id of its newest status, or -1 if there is none.
+    */
+    static long newestId(Window window) {
+        return (window == null) ? -1 : newestId(window.statuses);
+    }
+
+    private static String key(String screen_name) {
+        return screen_name.toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, Window> lruMap(final int max_accounts) {
+        return new LinkedHashMap<String, Window>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > max_accounts;
+            }
+        };
+    }
+
+    static final class Window {
+        final List<Status> statuses;
+        final int          limit;
+
+        Window(List<Status> statuses, int limit) {
+            this.statuses = Collections.unmodifiableList(statuses);
+            this.limit    = limit;
+        }
+    }
+}
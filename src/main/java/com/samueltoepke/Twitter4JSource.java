@@ -0,0 +1,73 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import twitter4j.*;
+import twitter4j.conf.ConfigurationBuilder;
+
+/**
+* Twitter4JSource class. TwitterSource backed by the live Twitter REST API
+* through Twitter4J, for one credential set.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class Twitter4JSource implements TwitterSource {
+
+    private final Twitter twitter;
+
+    /**
+    * Constructor for the Twitter4JSource object.
+    *
+    * @param credentials security keys for Twitter.
+    * @param options connect and read timeouts.
+    * @return instantiated Twitter4JSource object.
+    */
+    public Twitter4JSource(TwitterCredentials credentials, Botometer4JOptions options) {
+        ConfigurationBuilder cb = new ConfigurationBuilder();
+            cb.setDebugEnabled(true);
+            cb.setOAuthConsumerKey(credentials.getConsumerKey());
+            cb.setOAuthConsumerSecret(credentials.getConsumerSecret());
+            cb.setOAuthAccessToken(credentials.getAccessToken());
+            cb.setOAuthAccessTokenSecret(credentials.getAccessTokenSecret());
+            cb.setJSONStoreEnabled(true); // Lets RecordingTwitterSource read the raw JSON back.
+            cb.setHttpConnectionTimeout(options.getConnectTimeoutMs());
+            cb.setHttpReadTimeout(options.getSocketTimeoutMs());
+
+        TwitterFactory tf = new TwitterFactory(cb.build());
+        this.twitter = tf.getInstance();
+    }
+
+    @Override
+    public User showUser(String screen_name) throws TwitterException {
+        return this.twitter.showUser(screen_name);
+    }
+
+    @Override
+    public ResponseList<User> lookupUsers(String... screen_names) throws TwitterException {
+        return this.twitter.lookupUsers(screen_names);
+    }
+
+    @Override
+    public ResponseList<Status> getUserTimeline(String screen_name, Paging paging) throws TwitterException {
+        return this.twitter.getUserTimeline(screen_name, paging);
+    }
+
+    @Override
+    public QueryResult search(Query query) throws TwitterException {
+        return this.twitter.search(query);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+* TwitterCredentials class. One set of Twitter app and access keys. A
+* Botometer4J client can hold several, and it spreads account lookups
+* across them to add up their rate limits.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public final class TwitterCredentials {
+
+    private final String consumer_key;
+    private final String consumer_secret;
+    private final String access_token;
+    private final String access_token_secret;
+
+    /**
+    * Constructor for the TwitterCredentials object.
+    *
+    * @param consumer_key security key for Twitter.
+    * @param consumer_secret security key for Twitter.
+    * @param access_token security key for Twitter.
+    * @param access_token_secret security key for Twitter.
+    * @return instantiated TwitterCredentials object.
+    */
+    public TwitterCredentials(String consumer_key, String consumer_secret, String access_token, String access_token_secret) {
+        this.consumer_key        = consumer_key;
+        this.consumer_secret     = consumer_secret;
+        this.access_token        = access_token;
+        this.access_token_secret = access_token_secret;
+    }
+
+   /**
+    * Reads every credential set from a properties file such as
+    * config.properties. The first set uses the plain keys (consumer_key,
+    * consumer_secret, access_token, access_token_secret). Further sets add
+    * a numeric suffix, e.g. consumer_key.2, consumer_key.3, read until the
+    * first missing number.
+    *
+    * @param prop loaded properties.
+    * @return credential sets, in file order.
+    */
+    public static List<TwitterCredentials> fromProperties(Properties prop) {
+        List<TwitterCredentials> togo = new ArrayList<>();
+
+        togo.add(fromProperties(prop, ""));
+
+        for (int i = 2; prop.getProperty("consumer_key." + i) != null; i++)
+            togo.add(fromProperties(prop, "." + i));
+
+        return togo;
+    }
+
+    private static TwitterCredentials fromProperties(Properties prop, String suffix) {
+        return new TwitterCredentials(prop.getProperty("consumer_key" + suffix), prop.getProperty("consumer_secret" + suffix),
+            prop.getProperty("access_token" + suffix), prop.getProperty("access_token_secret" + suffix));
+    }
+
+   /**
+    * @return true if every key is populated.
+    */
+    public boolean isComplete() {
+        return !(StringUtils.isEmpty(this.consumer_key) || StringUtils.isEmpty(this.consumer_secret) || StringUtils.isEmpty(this.access_token) || StringUtils.isEmpty(this.access_token_secret));
+    }
+
+    public String getConsumerKey() {
+        return this.consumer_key;
+    }
+
+    public String getConsumerSecret() {
+        return this.consumer_secret;
+    }
+
+    public String getAccessToken() {
+        return this.access_token;
+    }
+
+    public String getAccessTokenSecret() {
+        return this.access_token_secret;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import twitter4j.Paging;
+import twitter4j.Query;
+import twitter4j.QueryResult;
+import twitter4j.ResponseList;
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.User;
+
+/**
+* TwitterSource interface. The Twitter REST calls Botometer4J makes,
+* pulled out so they can be served by the live API (Twitter4JSource),
+* recorded to disk (RecordingTwitterSource) or replayed from disk without
+* a network (ReplayTwitterSource). Implementations must be thread-safe.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public interface TwitterSource {
+
+   /**
+    * @param screen_name The Twitter user to look up.
+    * @return the user, as from GET users/show.
+    */
+    User showUser(String screen_name) throws TwitterException;
+
+   /**
+    * @param screen_names up to 100 Twitter users to look up.
+    * @return the users found, as from GET users/lookup; missing and
+    * suspended accounts are left out.
+    */
+    ResponseList<User> lookupUsers(String... screen_names) throws TwitterException;
+
+   /**
+    * @param screen_name The Twitter user whose timeline to read.
+    * @param paging count, since_id and max_id of the page.
+    * @return one page of the timeline, newest first, as from GET statuses/user_timeline.
+    */
+    ResponseList<Status> getUserTimeline(String screen_name, Paging paging) throws TwitterException;
+
+   /**
+    * @param query search query.
+    * @return matching statuses, as from GET search/tweets.
+    */
+    QueryResult search(Query query) throws TwitterException;
+}
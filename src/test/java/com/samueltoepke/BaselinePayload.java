@@ -0,0 +1,237 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import twitter4j.HashtagEntity;
+import twitter4j.Status;
+import twitter4j.URLEntity;
+import twitter4j.User;
+import twitter4j.UserMentionEntity;
+
+/**
+* BaselinePayload class. The Botometer payload as the first release built
+* it: a Gson JsonObject per status and user, the whole tree turned into a
+* String at the end. Kept as the reference the streaming PayloadWriter has
+* to match character for character.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class BaselinePayload {
+
+    private BaselinePayload() {
+    }
+
+   /**
+    * @param account_data user, timeline and mentions.
+    * @param max_tweets most timeline statuses sent.
+    * @return the payload as a String.
+    */
+    static String render(AccountData account_data, int max_tweets) {
+        JsonObject mashape_request_body = new JsonObject();
+
+        JsonObject user_json = new JsonObject();
+        user_json.addProperty("id", Long.toString(account_data.getUser().getId()));
+        user_json.addProperty("screen_name", account_data.getUser().getScreenName());
+        mashape_request_body.add("user", user_json);
+
+        JsonArray statuses_json = new JsonArray();
+        int count = 0;
+        for (Status status : account_data.getTimeline()) {
+            statuses_json.add(getJsonFromStatus(status));
+
+            count++;
+
+            if (count == max_tweets)
+                break;
+        }
+        mashape_request_body.add("timeline", statuses_json);
+
+        JsonArray mentions_array = new JsonArray();
+        for (Status status : account_data.getMentions())
+            mentions_array.add(getJsonFromStatus(status));
+        mashape_request_body.add("mentions", mentions_array);
+
+        return mashape_request_body.toString();
+    }
+
+    private static JsonObject getJsonFromStatus(Status status) {
+        JsonObject status_json = new JsonObject();
+
+        status_json.addProperty("id", status.getId());
+        status_json.addProperty("id_str", Long.toString(status.getId()));
+        status_json.addProperty("possibly_sensitive", status.isPossiblySensitive());
+        status_json.addProperty("favorited", status.isFavorited());
+        status_json.addProperty("lang", status.getLang());
+        status_json.addProperty("retweeted", status.isRetweeted());
+        status_json.addProperty("retweet_count", status.getRetweetCount());
+        status_json.addProperty("truncated", status.isTruncated());
+        status_json.addProperty("contributors", (String) null);
+        status_json.addProperty("favorite_count", status.getFavoriteCount());
+        status_json.addProperty("source", status.getSource());
+        status_json.addProperty("text", status.getText());
+        status_json.addProperty("in_reply_to_screen_name", status.getInReplyToScreenName());
+        status_json.addProperty("coordinates", (String) null);
+        status_json.addProperty("geo", (String) null);
+        status_json.addProperty("place", (String) null);
+        status_json.addProperty("created_at", getFormattedDate(status.getCreatedAt()));
+
+        if (status.getInReplyToUserId() == -1) {
+            status_json.addProperty("in_reply_to_user_id", (String) null);
+            status_json.addProperty("in_reply_to_user_id_str", (String) null);
+        } else {
+            status_json.addProperty("in_reply_to_user_id", status.getInReplyToUserId());
+            status_json.addProperty("in_reply_to_user_id_str", Long.toString(status.getInReplyToUserId()));
+        }
+
+        if (status.getInReplyToStatusId() == -1) {
+            status_json.addProperty("in_reply_to_status_id", (String) null);
+            status_json.addProperty("in_reply_to_status_id_str", (String) null);
+        } else {
+            status_json.addProperty("in_reply_to_status_id", status.getInReplyToStatusId());
+            status_json.addProperty("in_reply_to_status_id_str", Long.toString(status.getInReplyToStatusId()));
+        }
+
+        status_json.addProperty("is_quote_status", status.getQuotedStatus() != null);
+
+        JsonArray urls_array = new JsonArray();
+        for (URLEntity url_entity : status.getURLEntities()) {
+            JsonObject temp_entity = new JsonObject();
+            temp_entity.addProperty("url", url_entity.getURL());
+            temp_entity.addProperty("expanded_url", url_entity.getExpandedURL());
+            temp_entity.addProperty("display_url", url_entity.getDisplayURL());
+            temp_entity.add("indices", indices(url_entity.getStart(), url_entity.getEnd()));
+            urls_array.add(temp_entity);
+        }
+
+        JsonArray hashtags_array = new JsonArray();
+        for (HashtagEntity hashtag_entity : status.getHashtagEntities()) {
+            JsonObject temp_entity = new JsonObject();
+            temp_entity.addProperty("text", hashtag_entity.getText());
+            temp_entity.add("indices", indices(hashtag_entity.getStart(), hashtag_entity.getEnd()));
+            hashtags_array.add(temp_entity);
+        }
+
+        JsonArray user_mentions_array = new JsonArray();
+        for (UserMentionEntity user_mention_entity : status.getUserMentionEntities()) {
+            JsonObject temp_entity = new JsonObject();
+            temp_entity.addProperty("name", user_mention_entity.getName());
+            temp_entity.addProperty("id_str", Long.toString(user_mention_entity.getId()));
+            temp_entity.addProperty("id", user_mention_entity.getId());
+            temp_entity.addProperty("screen_name", user_mention_entity.getScreenName());
+            temp_entity.add("indices", indices(user_mention_entity.getStart(), user_mention_entity.getEnd()));
+            user_mentions_array.add(temp_entity);
+        }
+
+        JsonObject entities = new JsonObject();
+        entities.add("urls", urls_array);
+        entities.add("symbols", new JsonArray());
+        entities.add("user_mentions", user_mentions_array);
+        entities.add("hashtags", hashtags_array);
+        status_json.add("entities", entities);
+
+        if (status.getRetweetedStatus() != null)
+            status_json.add("retweeted_status", getJsonFromStatus(status.getRetweetedStatus()));
+
+        status_json.add("user", getJsonFromUser(status.getUser()));
+
+        return status_json;
+    }
+
+    private static JsonObject getJsonFromUser(User user) {
+        JsonObject user_json = new JsonObject();
+
+        user_json.addProperty("favourites_count", user.getFavouritesCount());
+        user_json.addProperty("followers_count", user.getFollowersCount());
+        user_json.addProperty("default_profile_image", user.isDefaultProfileImage());
+        user_json.addProperty("description", user.getDescription());
+        user_json.addProperty("url", user.getURL());
+        user_json.addProperty("profile_background_color", user.getProfileBackgroundColor());
+        user_json.addProperty("statuses_count", user.getStatusesCount());
+        user_json.addProperty("follow_request_sent", user.isFollowRequestSent());
+        user_json.addProperty("created_at", getFormattedDate(user.getCreatedAt()));
+        user_json.addProperty("profile_image_url_https", user.getProfileImageURLHttps());
+        user_json.addProperty("friends_count", user.getFriendsCount());
+        user_json.addProperty("profile_image_url", user.getProfileImageURL());
+        user_json.addProperty("profile_background_image_url_https", user.getProfileBackgroundImageUrlHttps());
+        user_json.addProperty("profile_sidebar_fill_color", user.getProfileSidebarFillColor());
+        user_json.addProperty("verified", user.isVerified());
+        user_json.addProperty("contributors_enabled", user.isContributorsEnabled());
+        user_json.addProperty("is_translator", user.isTranslator());
+        user_json.addProperty("default_profile", user.isDefaultProfile());
+        user_json.addProperty("lang", user.getLang());
+        user_json.addProperty("protected", user.isProtected());
+        user_json.addProperty("location", user.getLocation());
+        user_json.addProperty("profile_text_color", user.getProfileTextColor());
+        user_json.addProperty("profile_banner_url", user.getProfileBannerURL());
+        user_json.addProperty("screen_name", user.getScreenName());
+        user_json.addProperty("id_str", Long.toString(user.getId()));
+        user_json.addProperty("name", user.getName());
+        user_json.addProperty("profile_background_tile", user.isProfileBackgroundTiled());
+        user_json.addProperty("profile_sidebar_border_color", user.getProfileSidebarBorderColor());
+        user_json.addProperty("utc_offset", user.getUtcOffset());
+        user_json.addProperty("id", user.getId());
+        user_json.addProperty("profile_link_color", user.getProfileLinkColor());
+        user_json.addProperty("profile_background_image_url", user.getProfileBackgroundImageURL());
+        user_json.addProperty("listed_count", user.getListedCount());
+        user_json.addProperty("geo_enabled", user.isGeoEnabled());
+        user_json.addProperty("profile_use_background_image", user.isProfileUseBackgroundImage());
+        user_json.addProperty("time_zone", user.getTimeZone());
+
+        JsonObject entities = new JsonObject();
+
+        JsonObject description_object = new JsonObject();
+        description_object.add("urls", new JsonArray());
+        entities.add("description", description_object);
+
+        JsonArray urls_array = new JsonArray();
+        JsonObject temp_entity = new JsonObject();
+        temp_entity.addProperty("url", user.getURLEntity().getURL());
+        temp_entity.addProperty("expanded_url", user.getURLEntity().getExpandedURL());
+        temp_entity.addProperty("display_url", user.getURLEntity().getDisplayURL());
+        temp_entity.add("indices", indices(user.getURLEntity().getStart(), user.getURLEntity().getEnd()));
+        urls_array.add(temp_entity);
+
+        JsonObject url_object = new JsonObject();
+        url_object.add("urls", urls_array);
+        entities.add("url", url_object);
+
+        user_json.add("entities", entities);
+
+        return user_json;
+    }
+
+    private static JsonArray indices(int start, int end) {
+        JsonArray togo = new JsonArray();
+        togo.add(start);
+        togo.add(end);
+        return togo;
+    }
+
+    private static String getFormattedDate(Date date) {
+        SimpleDateFormat sdf = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy");
+        sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        return sdf.format(date);
+    }
+}
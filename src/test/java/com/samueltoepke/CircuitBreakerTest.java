@@ -0,0 +1,131 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+* CircuitBreakerTest class. CLOSED to OPEN on repeated failures, OPEN to
+* HALF_OPEN after the open time, and the single trial request deciding
+* between CLOSED and OPEN again.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 100;
+
+    @Test
+    public void testStartsClosed() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MS);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testOpensAfterThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MS);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MS);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenAllowsOneTrial() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MS + 50);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testTrialSuccessCloses() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MS + 50);
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testTrialFailureReopens() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MS + 50);
+
+        assertTrue(breaker.allowRequest());
+        long before = System.currentTimeMillis();
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.getOpenUntil() >= before + OPEN_MS);
+        assertFalse(breaker.allowRequest());
+    }
+
+    // A trial that never reports back stops blocking after another open time.
+    @Test
+    public void testAbandonedTrialExpires() throws Exception {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MS + 50);
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(OPEN_MS + 50);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveThreshold() {
+        new CircuitBreaker(0, OPEN_MS);
+    }
+
+    private static CircuitBreaker open() {
+        CircuitBreaker breaker = new CircuitBreaker(1, OPEN_MS);
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
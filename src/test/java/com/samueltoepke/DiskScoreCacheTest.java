@@ -0,0 +1,132 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+* DiskScoreCacheTest class. Expiry, persistence across reopening, and the
+* compaction that keeps the append-only store bounded.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class DiskScoreCacheTest {
+
+    private static final long TTL_MS = 60000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSurvivesReopen() throws Exception {
+        File file = folder.newFile("scores.db");
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, TTL_MS)) {
+            cache.put("a", "{\"a\":\"\u00e9\"}");
+            cache.put("b", "2");
+            cache.put("a", "3"); // Overwrites.
+            cache.remove("b");
+        }
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, TTL_MS)) {
+            assertEquals("3", cache.get("a"));
+            assertNull(cache.get("b"));
+            assertEquals(1, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+        }
+    }
+
+    @Test
+    public void testExpiredEntryIsAMiss() throws Exception {
+        File file = folder.newFile("scores.db");
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, 100)) {
+            cache.put("a", "1");
+            assertEquals("1", cache.get("a"));
+
+            Thread.sleep(150);
+            assertNull(cache.get("a"));
+        }
+    }
+
+    // Expired entries aren't loaded, and the store is rewritten without them.
+    @Test
+    public void testReopenDropsExpiredEntries() throws Exception {
+        File file = folder.newFile("scores.db");
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, 100)) {
+            cache.put("a", "1");
+            cache.put("b", "2");
+        }
+        Thread.sleep(150);
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, 100)) {
+            assertNull(cache.get("a"));
+            assertEquals(0, file.length());
+        }
+    }
+
+    // A partial record left by a crash is dropped; the records before it are kept.
+    @Test
+    public void testTruncatesPartialRecord() throws Exception {
+        File file = folder.newFile("scores.db");
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, TTL_MS)) {
+            cache.put("a", "1");
+        }
+
+        long complete = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(complete);
+            raf.writeInt(40); // Key length with no key after it.
+        }
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, TTL_MS)) {
+            assertEquals("1", cache.get("a"));
+            assertEquals(complete, file.length());
+        }
+    }
+
+    // Rewriting a few keys over and over compacts in use instead of growing without bound.
+    @Test
+    public void testCompactsInUse() throws Exception {
+        File file = folder.newFile("scores.db");
+        int  puts = 5 * DiskScoreCache.COMPACT_MIN_RECORDS;
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, TTL_MS)) {
+            for (int i = 0; i < puts; i++)
+                cache.put("key" + (i % 10), "value" + i);
+
+            // Each record here is at most 32 bytes; compaction keeps about twice the threshold.
+            assertTrue(file.length() < 2L * (DiskScoreCache.COMPACT_MIN_RECORDS + 10) * 32);
+        }
+
+        try (DiskScoreCache cache = new DiskScoreCache(file, TTL_MS)) {
+            for (int k = 0; k < 10; k++)
+                assertEquals("value" + (puts - 10 + k), cache.get("key" + k));
+        }
+    }
+}
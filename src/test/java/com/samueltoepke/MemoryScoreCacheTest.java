@@ -0,0 +1,93 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+* MemoryScoreCacheTest class. Expiry, LRU eviction and the hit/miss counters.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class MemoryScoreCacheTest {
+
+    private static final long TTL_MS = 60000;
+
+    @Test
+    public void testHitAndMiss() {
+        MemoryScoreCache cache = new MemoryScoreCache(10, TTL_MS);
+        cache.put("a", "{\"a\":1}");
+
+        assertEquals("{\"a\":1}", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testExpiredEntryIsAMiss() {
+        MemoryScoreCache cache = new MemoryScoreCache(10, TTL_MS);
+        long now = System.currentTimeMillis();
+
+        cache.put("fresh", "1", now - TTL_MS / 2);
+        cache.put("stale", "2", now - TTL_MS - 1);
+
+        assertEquals("1", cache.get("fresh"));
+        assertNull(cache.get("stale"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    // An entry promoted from a slower tier keeps its original write time.
+    @Test
+    public void testPutKeepsWriteTime() {
+        MemoryScoreCache cache = new MemoryScoreCache(10, TTL_MS);
+        cache.put("old", "1", System.currentTimeMillis() - TTL_MS);
+
+        assertNull(cache.get("old"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        MemoryScoreCache cache = new MemoryScoreCache(2, TTL_MS);
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        cache.get("a"); // b is now the least recently used.
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    public void testRemove() {
+        MemoryScoreCache cache = new MemoryScoreCache(10, TTL_MS);
+        cache.put("a", "1");
+        cache.remove("a");
+
+        assertNull(cache.get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveSize() {
+        new MemoryScoreCache(0, TTL_MS);
+    }
+}
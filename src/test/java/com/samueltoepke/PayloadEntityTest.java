@@ -0,0 +1,142 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import twitter4j.Status;
+import twitter4j.TwitterObjectFactory;
+import twitter4j.User;
+
+/**
+* PayloadEntityTest class. The streamed payload has to be the same text,
+* character for character, as the Gson tree the first release built.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class PayloadEntityTest {
+
+    private static final long FOLLOWERS = TwitterFixtures.USER_ID % 10007;
+
+    @Test
+    public void testMatchesBaseline() throws Exception {
+        AccountData account_data = TwitterFixtures.variedAccount(60, 30);
+
+        assertEquals(BaselinePayload.render(account_data, Botometer4J.MAX_TWEETS), render(account_data));
+    }
+
+    @Test
+    public void testTimelineCutToMaxTweets() throws Exception {
+        AccountData account_data = TwitterFixtures.variedAccount(Botometer4J.MAX_TWEETS + 20, 10);
+
+        assertEquals(BaselinePayload.render(account_data, Botometer4J.MAX_TWEETS), render(account_data));
+    }
+
+    @Test
+    public void testEmptyTimelineAndMentions() throws Exception {
+        AccountData account_data = TwitterFixtures.variedAccount(0, 0);
+
+        assertEquals(BaselinePayload.render(account_data, Botometer4J.MAX_TWEETS), render(account_data));
+    }
+
+    // Two copies of one user that differ in a single field must not share memoized JSON.
+    @Test
+    public void testUserCopiesSerializedSeparately() throws Exception {
+        String before = TwitterFixtures.userJson(TwitterFixtures.USER_ID, TwitterFixtures.SCREEN_NAME);
+        String after  = before.replace("\"followers_count\":" + FOLLOWERS, "\"followers_count\":" + (FOLLOWERS + 1));
+        User   user   = TwitterObjectFactory.createUser(before);
+
+        List<Status> timeline = Arrays.asList(status(11, before, 1), status(12, before, 2));
+        List<Status> mentions = Arrays.asList(status(21, after, 1));
+        AccountData account_data = new AccountData(TwitterFixtures.SCREEN_NAME, user, timeline, mentions);
+
+        String payload = render(account_data);
+        assertEquals(BaselinePayload.render(account_data, Botometer4J.MAX_TWEETS), payload);
+        assertNotEquals(-1, payload.indexOf("\"followers_count\":" + (FOLLOWERS + 1)));
+    }
+
+    // The same status in the timeline and the mentions, with a retweet count that moved in between.
+    @Test
+    public void testRepeatedStatusCopiesSerializedSeparately() throws Exception {
+        String author = TwitterFixtures.userJson(TwitterFixtures.USER_ID, TwitterFixtures.SCREEN_NAME);
+        User   user   = TwitterObjectFactory.createUser(author);
+        String first  = TwitterFixtures.statusJson(31, author, null, null, 4, true);
+        String second = first.replace("\"retweet_count\":4", "\"retweet_count\":9");
+
+        List<Status> timeline = Arrays.asList(TwitterObjectFactory.createStatus(first));
+        List<Status> mentions = Arrays.asList(TwitterObjectFactory.createStatus(second), timeline.get(0));
+        AccountData account_data = new AccountData(TwitterFixtures.SCREEN_NAME, user, timeline, mentions);
+
+        assertEquals(BaselinePayload.render(account_data, Botometer4J.MAX_TWEETS), render(account_data));
+    }
+
+    @Test
+    public void testGzipBodyDecodesToPayload() throws Exception {
+        AccountData account_data = TwitterFixtures.variedAccount(40, 20);
+        PayloadEntity entity = new PayloadEntity(account_data, PayloadProfile.FULL, BotometerMetrics.NONE, true);
+
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        try (InputStream in = new GZIPInputStream(entity.getContent())) {
+            assertEquals(render(account_data), new String(readAll(in), StandardCharsets.UTF_8));
+        }
+    }
+
+    // A retried POST writes the entity again; both writes must carry the same bytes.
+    @Test
+    public void testRepeatable() throws Exception {
+        PayloadEntity entity = new PayloadEntity(TwitterFixtures.variedAccount(20, 10));
+
+        ByteArrayOutputStream first  = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        entity.writeTo(first);
+        entity.writeTo(second);
+
+        assertEquals(first.toString("UTF-8"), second.toString("UTF-8"));
+    }
+
+    private static Status status(long id, String user_json, int seed) throws Exception {
+        return TwitterObjectFactory.createStatus(TwitterFixtures.statusJson(id, user_json, null, null, seed, true));
+    }
+
+    private static String render(AccountData account_data) throws IOException {
+        StringWriter out = new StringWriter();
+        new PayloadEntity(account_data).writeTo(out);
+        return out.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream togo = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+            togo.write(buffer, 0, read);
+
+        return togo.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+/**
+* PayloadProfileTest class. Profiles compare by their limits and fields,
+* so a derived profile still matches the preset it stands for.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class PayloadProfileTest {
+
+    @Test
+    public void testWithoutMatchesEquivalentProfile() {
+        PayloadProfile derived  = PayloadProfile.FULL.without(PayloadProfile.Field.CONSTANT_FIELDS);
+        PayloadProfile expected = new PayloadProfile(Botometer4J.MAX_TWEETS, Botometer4J.MAX_MENTIONS,
+            EnumSet.complementOf(EnumSet.of(PayloadProfile.Field.CONSTANT_FIELDS)));
+
+        assertEquals(expected, derived);
+        assertEquals(expected.hashCode(), derived.hashCode());
+        assertEquals(derived, PayloadProfile.FULL.without(PayloadProfile.Field.CONSTANT_FIELDS));
+    }
+
+    @Test
+    public void testWithoutAbsentFieldReturnsSameProfile() {
+        assertSame(PayloadProfile.QUICK, PayloadProfile.QUICK.without(PayloadProfile.Field.CONSTANT_FIELDS));
+    }
+
+    @Test
+    public void testDifferentLimitsOrFieldsNotEqual() {
+        assertNotEquals(PayloadProfile.FULL, PayloadProfile.NO_MENTIONS);
+        assertNotEquals(PayloadProfile.FULL, PayloadProfile.FULL.without(PayloadProfile.Field.ENTITIES));
+        assertNotEquals(PayloadProfile.QUICK, new PayloadProfile(50, 0, EnumSet.of(PayloadProfile.Field.ENTITIES)));
+    }
+}
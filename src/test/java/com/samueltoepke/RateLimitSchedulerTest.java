@@ -0,0 +1,178 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+* RateLimitSchedulerTest class. Quota tracking, the reserve, window
+* rollover and the single probe request after a reset.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class RateLimitSchedulerTest {
+
+    private static final String ENDPOINT = RateLimitScheduler.USER_TIMELINE + "#test";
+
+    @Test
+    public void testUnknownQuotaGoesStraightThrough() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+
+        for (int i = 0; i < 3 * RateLimitScheduler.DEFAULT_BURST; i++)
+            assertTrue(acquireWithin(scheduler, 100));
+        assertEquals(-1, scheduler.getRemaining(ENDPOINT));
+    }
+
+    @Test
+    public void testAdmittedRequestsCountDown() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(5, 1);
+        scheduler.update(ENDPOINT, 900, 100, System.currentTimeMillis() + 60000);
+
+        scheduler.acquire(ENDPOINT);
+        scheduler.acquire(ENDPOINT);
+
+        assertEquals(98, scheduler.getRemaining(ENDPOINT));
+    }
+
+    @Test
+    public void testReserveHoldsRequests() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(5, 2);
+        scheduler.update(ENDPOINT, 900, 2, System.currentTimeMillis() + 60000);
+
+        assertTrue(scheduler.isExhausted(ENDPOINT));
+        assertFalse(acquireWithin(scheduler, 200));
+    }
+
+    @Test
+    public void testExhaustedHoldsUntilReset() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        long reset_at = System.currentTimeMillis() + 300;
+        scheduler.exhausted(ENDPOINT, reset_at);
+
+        assertTrue(scheduler.isExhausted(ENDPOINT));
+        assertEquals(reset_at, scheduler.getResetAt(ENDPOINT));
+
+        long started = System.currentTimeMillis();
+        scheduler.acquire(ENDPOINT);
+        assertTrue(System.currentTimeMillis() - started >= 250);
+    }
+
+    // A reset time that has already passed mustn't release requests at once.
+    @Test
+    public void testExhaustedInThePastHoldsForDefault() {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        long now = System.currentTimeMillis();
+        scheduler.exhausted(ENDPOINT, now - 5000);
+
+        assertTrue(scheduler.getResetAt(ENDPOINT) >= now + RateLimitScheduler.DEFAULT_RETRY_AFTER_MS);
+        assertTrue(scheduler.isExhausted(ENDPOINT));
+    }
+
+    @Test
+    public void testRolloverRestoresLimit() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(ENDPOINT, 900, 0, System.currentTimeMillis() + 100);
+        assertTrue(scheduler.isExhausted(ENDPOINT));
+
+        Thread.sleep(150);
+
+        assertFalse(scheduler.isExhausted(ENDPOINT));
+        assertEquals(900, scheduler.getRemaining(ENDPOINT));
+    }
+
+    // After a rollover one request goes first; the rest wait for its response.
+    @Test
+    public void testOneProbeAfterRollover() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(ENDPOINT, 900, 0, System.currentTimeMillis() + 100);
+        Thread.sleep(150);
+
+        assertTrue(acquireWithin(scheduler, 100));
+
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread second = new Thread(() -> {
+            try {
+                scheduler.acquire(ENDPOINT);
+                admitted.countDown();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        second.setDaemon(true);
+        second.start();
+
+        assertFalse(admitted.await(300, TimeUnit.MILLISECONDS));
+
+        scheduler.update(ENDPOINT, 900, 899, System.currentTimeMillis() + 60000);
+        assertTrue(admitted.await(1, TimeUnit.SECONDS));
+    }
+
+    // A probe whose response had no quota lets the rest through as before.
+    @Test
+    public void testUnreportedEndsProbe() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.update(ENDPOINT, 900, 0, System.currentTimeMillis() + 100);
+        Thread.sleep(150);
+
+        assertTrue(acquireWithin(scheduler, 100));
+        assertFalse(acquireWithin(scheduler, 200));
+
+        scheduler.unreported(ENDPOINT);
+        assertTrue(acquireWithin(scheduler, 100));
+        assertTrue(acquireWithin(scheduler, 100));
+    }
+
+    @Test
+    public void testEndpointsTrackedSeparately() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.exhausted(ENDPOINT, System.currentTimeMillis() + 60000);
+
+        assertTrue(scheduler.isExhausted(ENDPOINT));
+        assertFalse(scheduler.isExhausted(RateLimitScheduler.SEARCH_TWEETS + "#test"));
+    }
+
+   /**
+    * @return true if acquire() returned within the given time.
+    */
+    private static boolean acquireWithin(RateLimitScheduler scheduler, long timeout_ms) throws InterruptedException {
+        CountDownLatch admitted = new CountDownLatch(1);
+
+        Thread caller = new Thread(() -> {
+            try {
+                scheduler.acquire(ENDPOINT);
+                admitted.countDown();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        caller.setDaemon(true);
+        caller.start();
+
+        boolean togo = admitted.await(timeout_ms, TimeUnit.MILLISECONDS);
+        caller.interrupt();
+        caller.join();
+
+        return togo;
+    }
+}
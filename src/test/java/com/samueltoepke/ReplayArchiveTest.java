@@ -0,0 +1,65 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+* ReplayArchiveTest class. Screen names are stored case-insensitively and
+* can't name a file outside the archive.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+public class ReplayArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testScreenNameIgnoresCase() throws Exception {
+        ReplayArchive archive = new ReplayArchive(folder.newFolder("archive"));
+
+        archive.putUser("Some_User1", "{\"id\":1}");
+
+        assertEquals("{\"id\":1}", archive.getUser("some_user1"));
+    }
+
+    @Test
+    public void testPathInScreenNameRejected() throws Exception {
+        File          root    = folder.newFolder("archive");
+        ReplayArchive archive = new ReplayArchive(root);
+
+        for (String screen_name : new String[] { "../escaped", "a/b", "..", "", "a\\b", "a.b" }) {
+            try {
+                archive.putUser(screen_name, "{}");
+                fail("accepted " + screen_name);
+            } catch (IllegalArgumentException expected) {
+                // Rejected before any file is touched.
+            }
+        }
+
+        assertFalse(new File(root, "escaped.json").exists());
+    }
+}
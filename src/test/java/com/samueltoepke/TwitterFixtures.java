@@ -0,0 +1,377 @@
+/*
+Copyright 2017 Samuel Lee Toepke
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.samueltoepke;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import com.google.gson.stream.JsonWriter;
+
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+import twitter4j.User;
+
+/**
+* TwitterFixtures class. Builds the Twitter API JSON the tests and the
+* benchmarks run against: an account with a full timeline and mentions,
+* where every fourth status is a retweet, every tenth quotes another
+* status, and each status carries several URL, hashtag and mention
+* entities and a long, non-ASCII text. The same JSON parses into Twitter4J
+* objects through TwitterObjectFactory, or fills a ReplayArchive for
+* end-to-end runs.
+*
+* The varied account mixes in what the benchmarks leave out: missing
+* profile fields, null langs, varying entity counts and statuses that show
+* up in both the timeline and the mentions, so the payload tests reach
+* every branch of the serializer.
+*
+* @author  Samuel Lee Toepke
+* @version 1.0
+*/
+final class TwitterFixtures {
+
+    static final String SCREEN_NAME   = "bench_account";
+    static final long   USER_ID       = 1000000001L;
+    static final int    ENTITIES      = 4;
+    static final int    TEXT_LENGTH   = 280;
+
+    // Twitter's own created_at format, which Twitter4J parses.
+    private static final FastDateFormat TWITTER_DATE_FORMAT =
+        FastDateFormat.getInstance("EEE MMM dd HH:mm:ss Z yyyy", TimeZone.getTimeZone("GMT"), Locale.US);
+
+    private static final String TEXT_SEED = "Benchmark tweet \u2713 with \"quotes\", \u00e9mojis \ud83d\ude80 #bots @someone https://t.co/abcdef ";
+
+    private TwitterFixtures() {
+    }
+
+   /**
+    * @param timeline_size statuses in the timeline.
+    * @param mentions_size statuses in the mentions.
+    * @return account built from parsed fixture JSON.
+    */
+    static AccountData account(int timeline_size, int mentions_size) throws TwitterException, IOException {
+        User user = TwitterObjectFactory.createUser(userJson(USER_ID, SCREEN_NAME));
+
+        List<Status> timeline = new ArrayList<Status>();
+        for (String raw : timelineJson(timeline_size).values())
+            timeline.add(TwitterObjectFactory.createStatus(raw));
+
+        List<Status> mentions = new ArrayList<Status>();
+        for (String raw : mentionsJson(mentions_size).values())
+            mentions.add(TwitterObjectFactory.createStatus(raw));
+
+        return new AccountData(SCREEN_NAME, user, timeline, mentions);
+    }
+
+   /**
+    * @param timeline_size statuses in the timeline.
+    * @param mentions_size statuses in the mentions.
+    * @return account built from the varied fixture JSON; every tenth mention is also in the timeline.
+    */
+    static AccountData variedAccount(int timeline_size, int mentions_size) throws TwitterException, IOException {
+        User user = TwitterObjectFactory.createUser(userJson(USER_ID, SCREEN_NAME));
+
+        List<Status> timeline = new ArrayList<Status>();
+        for (int i = timeline_size; i > 0; i--) {
+            long   id        = 900000000000000000L + i;
+            String retweeted = null;
+            String quoted    = null;
+
+            if (i % 4 == 0) {
+                long other_id = 2000000000L + (i % 6);
+                retweeted = statusJson(800000000000000000L + i, userJson(other_id, "other_" + (i % 6), other_id % 2 == 0), null, null, i + 1, true);
+            }
+
+            if (i % 5 == 0)
+                quoted = statusJson(700000000000000000L + i, userJson(3000000000L + i, "quoted_" + i, i % 2 == 0), null, null, i + 1, true);
+
+            timeline.add(TwitterObjectFactory.createStatus(statusJson(id, userJson(USER_ID, SCREEN_NAME), retweeted, quoted, i, true)));
+        }
+
+        List<Status> mentions = new ArrayList<Status>();
+        for (int i = mentions_size; i > 0; i--) {
+            if (i % 10 == 0 && i <= timeline_size) {
+                mentions.add(timeline.get(timeline_size - i));
+            } else {
+                long id        = 600000000000000000L + i;
+                long author_id = 4000000000L + (i % 5);
+                mentions.add(TwitterObjectFactory.createStatus(statusJson(id, userJson(author_id, "mentioner_" + (i % 5), author_id % 2 == 0), null, null, i, true)));
+            }
+        }
+
+        return new AccountData(SCREEN_NAME, user, timeline, mentions);
+    }
+
+   /**
+    * Writes the fixture account, and a Botometer reply for it, into an
+    * archive that ReplayTwitterSource and BotometerReplayServer can serve.
+    *
+    * @param archive archive to fill.
+    * @param timeline_size statuses in the timeline.
+    * @param mentions_size statuses in the mentions.
+    */
+    static void record(ReplayArchive archive, int timeline_size, int mentions_size) throws IOException {
+        archive.putUser(SCREEN_NAME, userJson(USER_ID, SCREEN_NAME));
+        archive.addTimeline(SCREEN_NAME, timelineJson(timeline_size));
+        archive.addMentions(SCREEN_NAME, mentionsJson(mentions_size));
+        archive.putBotometerReply(USER_ID, botometerReply(USER_ID, SCREEN_NAME));
+    }
+
+   /**
+    * @return raw JSON of the timeline, by status id, newest first.
+    */
+    static Map<Long, String> timelineJson(int size) throws IOException {
+        Map<Long, String> togo = new LinkedHashMap<Long, String>();
+
+        for (int i = size; i > 0; i--) {
+            long id = 900000000000000000L + i;
+            String retweeted = null;
+            String quoted    = null;
+
+            if (i % 4 == 0) {
+                long other_id = 2000000000L + (i % 16);
+                retweeted = statusJson(800000000000000000L + i, userJson(other_id, "other_" + (i % 16)), null, null, i);
+            }
+
+            if (i % 10 == 0)
+                quoted = statusJson(700000000000000000L + i, userJson(3000000000L + i, "quoted_" + i), null, null, i);
+
+            togo.put(id, statusJson(id, userJson(USER_ID, SCREEN_NAME), retweeted, quoted, i));
+        }
+
+        return togo;
+    }
+
+   /**
+    * @return raw JSON of the mentions, by status id, newest first. Most
+    * mentions come from a handful of repeat authors, as in real data.
+    */
+    static Map<Long, String> mentionsJson(int size) throws IOException {
+        Map<Long, String> togo = new LinkedHashMap<Long, String>();
+
+        for (int i = size; i > 0; i--) {
+            long id         = 600000000000000000L + i;
+            long author_id  = 4000000000L + (i % 8 == 0 ? i : i % 8);
+            togo.put(id, statusJson(id, userJson(author_id, "mentioner_" + author_id), null, null, i));
+        }
+
+        return togo;
+    }
+
+    static String userJson(long id, String screen_name) throws IOException {
+        return userJson(id, screen_name, false);
+    }
+
+   /**
+    * @param sparse leave out the optional profile fields, as many real accounts do.
+    */
+    static String userJson(long id, String screen_name, boolean sparse) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter w = new JsonWriter(out);
+
+        w.beginObject();
+        w.name("id").value(id);
+        w.name("id_str").value(Long.toString(id));
+        w.name("name").value("Bench \u00c5ccount " + screen_name);
+        w.name("screen_name").value(screen_name);
+        w.name("location").value(sparse ? null : "Colorado Springs, CO");
+        w.name("description").value(sparse ? null : text(160, (int) (id % 97)));
+        w.name("url").value(sparse ? null : "https://t.co/" + screen_name);
+        w.name("protected").value(false);
+        w.name("followers_count").value(id % 10007);
+        w.name("friends_count").value(id % 1009);
+        w.name("listed_count").value(id % 101);
+        w.name("created_at").value(TWITTER_DATE_FORMAT.format(new Date(1262304000000L + (id % 100000) * 60000L)));
+        w.name("favourites_count").value(id % 5003);
+        w.name("utc_offset").value(-25200);
+        w.name("time_zone").value(sparse ? null : "Mountain Time (US & Canada)");
+        w.name("geo_enabled").value(!sparse);
+        w.name("verified").value(sparse);
+        w.name("statuses_count").value(id % 50021);
+        w.name("lang").value(sparse ? null : "en");
+        w.name("contributors_enabled").value(false);
+        w.name("is_translator").value(false);
+        w.name("profile_background_color").value("C0DEED");
+        w.name("profile_background_image_url").value("http://abs.twimg.com/images/themes/theme1/bg.png");
+        w.name("profile_background_image_url_https").value("https://abs.twimg.com/images/themes/theme1/bg.png");
+        w.name("profile_background_tile").value(false);
+        w.name("profile_image_url").value("http://pbs.twimg.com/profile_images/" + id + "/normal.jpg");
+        w.name("profile_image_url_https").value("https://pbs.twimg.com/profile_images/" + id + "/normal.jpg");
+        w.name("profile_banner_url").value(sparse ? null : "https://pbs.twimg.com/profile_banners/" + id + "/1500000000");
+        w.name("profile_link_color").value("1DA1F2");
+        w.name("profile_sidebar_border_color").value("C0DEED");
+        w.name("profile_sidebar_fill_color").value("DDEEF6");
+        w.name("profile_text_color").value("333333");
+        w.name("profile_use_background_image").value(true);
+        w.name("default_profile").value(!sparse);
+        w.name("default_profile_image").value(sparse);
+        w.name("following").value(false);
+        w.name("follow_request_sent").value(false);
+        w.name("notifications").value(false);
+        w.endObject();
+        w.close();
+
+        return out.toString();
+    }
+
+    static String statusJson(long id, String user_json, String retweeted_json, String quoted_json, int seed) throws IOException {
+        return statusJson(id, user_json, retweeted_json, quoted_json, seed, false);
+    }
+
+   /**
+    * @param varied vary the entity counts and flags with the seed, and
+    * leave out lang and possibly_sensitive on some statuses.
+    */
+    static String statusJson(long id, String user_json, String retweeted_json, String quoted_json, int seed, boolean varied) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter w = new JsonWriter(out);
+
+        w.beginObject();
+        w.name("created_at").value(TWITTER_DATE_FORMAT.format(new Date(1500000000000L + seed * 3600000L)));
+        w.name("id").value(id);
+        w.name("id_str").value(Long.toString(id));
+        w.name("text").value(varied ? text(TEXT_LENGTH / 2, seed) + " <b>&amp;</b>\t" : text(TEXT_LENGTH, seed));
+        w.name("source").value("<a href=\"http://twitter.com\" rel=\"nofollow\">Twitter Web Client</a>");
+        w.name("truncated").value(varied && seed % 7 == 0);
+
+        if (seed % 3 == 0) {
+            w.name("in_reply_to_status_id").value(id - 1);
+            w.name("in_reply_to_status_id_str").value(Long.toString(id - 1));
+            w.name("in_reply_to_user_id").value(USER_ID);
+            w.name("in_reply_to_user_id_str").value(Long.toString(USER_ID));
+            w.name("in_reply_to_screen_name").value(SCREEN_NAME);
+        } else {
+            w.name("in_reply_to_status_id").nullValue();
+            w.name("in_reply_to_status_id_str").nullValue();
+            w.name("in_reply_to_user_id").nullValue();
+            w.name("in_reply_to_user_id_str").nullValue();
+            w.name("in_reply_to_screen_name").nullValue();
+        }
+
+        w.name("user").jsonValue(user_json);
+        w.name("geo").nullValue();
+        w.name("coordinates").nullValue();
+        w.name("place").nullValue();
+        w.name("contributors").nullValue();
+
+        if (retweeted_json != null)
+            w.name("retweeted_status").jsonValue(retweeted_json);
+
+        w.name("is_quote_status").value(quoted_json != null);
+        if (quoted_json != null) {
+            w.name("quoted_status_id").value(id - 100);
+            w.name("quoted_status").jsonValue(quoted_json);
+        }
+
+        w.name("retweet_count").value(seed % 37);
+        w.name("favorite_count").value(seed % 53);
+
+        int hashtags      = varied ? seed % 3 : ENTITIES;
+        int user_mentions = varied ? seed % 2 + 1 : ENTITIES;
+        int urls          = varied ? seed % (ENTITIES + 1) : ENTITIES;
+
+        w.name("entities").beginObject();
+        w.name("hashtags").beginArray();
+        for (int i = 0; i < hashtags; i++) {
+            w.beginObject();
+            w.name("text").value("tag" + i + "_" + seed);
+            w.name("indices").beginArray().value(i * 10).value(i * 10 + 8).endArray();
+            w.endObject();
+        }
+        w.endArray();
+        w.name("symbols").beginArray().endArray();
+        w.name("user_mentions").beginArray();
+        for (int i = 0; i < user_mentions; i++) {
+            w.beginObject();
+            w.name("screen_name").value("mention_" + i);
+            w.name("name").value("Mention \u00d1ame " + i);
+            w.name("id").value(5000000000L + i);
+            w.name("id_str").value(Long.toString(5000000000L + i));
+            w.name("indices").beginArray().value(50 + i * 12).value(60 + i * 12).endArray();
+            w.endObject();
+        }
+        w.endArray();
+        w.name("urls").beginArray();
+        for (int i = 0; i < urls; i++) {
+            w.beginObject();
+            w.name("url").value("https://t.co/u" + i + seed);
+            w.name("expanded_url").value("https://example.com/a/fairly/long/path/" + seed + "/" + i + "?utm_source=twitter");
+            w.name("display_url").value("example.com/a/fairly/long\u2026");
+            w.name("indices").beginArray().value(120 + i * 24).value(143 + i * 24).endArray();
+            w.endObject();
+        }
+        w.endArray();
+        w.endObject();
+
+        w.name("favorited").value(varied && seed % 6 == 0);
+        w.name("retweeted").value(retweeted_json != null);
+        if (!varied || seed % 8 != 0)
+            w.name("possibly_sensitive").value(varied && seed % 3 == 1);
+        w.name("lang").value(varied && seed % 9 == 0 ? null : "en");
+        w.endObject();
+        w.close();
+
+        return out.toString();
+    }
+
+    static String botometerReply(long id, String screen_name) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter w = new JsonWriter(out);
+
+        w.beginObject();
+        w.name("cap").beginObject().name("english").value(0.0016).name("universal").value(0.0021).endObject();
+        w.name("categories").beginObject();
+        w.name("content").value(0.29).name("friend").value(0.31).name("network").value(0.22);
+        w.name("sentiment").value(0.35).name("temporal").value(0.41).name("user").value(0.11);
+        w.endObject();
+        w.name("display_scores").beginObject();
+        w.name("content").value(1.5).name("english").value(0.9).name("friend").value(1.6).name("network").value(1.1);
+        w.name("sentiment").value(1.8).name("temporal").value(2.1).name("universal").value(1.0).name("user").value(0.6);
+        w.endObject();
+        w.name("scores").beginObject().name("english").value(0.18).name("universal").value(0.2).endObject();
+        w.name("user").beginObject().name("id_str").value(Long.toString(id)).name("screen_name").value(screen_name).endObject();
+        w.endObject();
+        w.close();
+
+        return out.toString();
+    }
+
+    private static String text(int length, int seed) {
+        StringBuilder togo = new StringBuilder(length + TEXT_SEED.length());
+        togo.append(seed).append(' ');
+
+        while (togo.length() < length)
+            togo.append(TEXT_SEED);
+
+        togo.setLength(length);
+
+        // Don't leave half a surrogate pair at the end.
+        if (Character.isHighSurrogate(togo.charAt(length - 1)))
+            togo.setLength(length - 1);
+
+        return togo.toString();
+    }
+}